@@ -0,0 +1,138 @@
+package chess;
+
+import chess.pieces.Piece;
+
+/**
+ * Keeps a rendered board in a preformatted character buffer.
+ *
+ * The frame is laid out once; afterwards only the piece characters are written, at offsets
+ * computed up front. A move patches just the squares it changed, and rendering a position that
+ * is already in the buffer costs nothing. The frame ends with a line separator so it can be
+ * written to the output in a single call.
+ */
+public class BoardRenderer {
+
+    /** Hash of the position in the buffer */
+    private long renderedHash;
+
+    /** Whether the buffer holds any position yet */
+    private boolean rendered = false;
+
+    /** The frame, separators and labels included */
+    private final char[] frame;
+
+    /** Offset of the piece character of every square in the frame, indexed by y * 8 + x */
+    private final int[] offsets = new int[64];
+
+    /** The line separator at the end of the frame */
+    private final String newline;
+
+    /** The character of an empty square */
+    private final char empty;
+
+    /**
+     * Create a renderer
+     * @param newline The line separator to use
+     * @param compact true for a single line such as "RNBQKBNR/PPPPPPPP/......../.../rnbqkbnr"
+     */
+    public BoardRenderer(String newline, boolean compact) {
+        this.newline = newline;
+        this.empty = compact ? '.' : ' ';
+        StringBuilder builder = new StringBuilder();
+        if (compact) {
+            layoutCompact(builder);
+        } else {
+            layoutBoard(builder);
+        }
+        builder.append(newline);
+        this.frame = builder.toString().toCharArray();
+    }
+
+    private void layoutCompact(StringBuilder builder) {
+        for (int row = Position.MAX_ROW; row >= Position.MIN_ROW; row--) {
+            for (int x = 0; x <= Position.MAX_AXIS; x++) {
+                offsets[(row - 1) * 8 + x] = builder.length();
+                builder.append(empty);
+            }
+            if (row > Position.MIN_ROW) {
+                builder.append('/');
+            }
+        }
+    }
+
+    private void layoutBoard(StringBuilder builder) {
+        builder.append(newline);
+        appendColumnLabels(builder);
+        for (int row = Position.MAX_ROW; row >= Position.MIN_ROW; row--) {
+            appendSeparator(builder);
+            builder.append(row);
+            for (int x = 0; x <= Position.MAX_AXIS; x++) {
+                builder.append(" | ");
+                offsets[(row - 1) * 8 + x] = builder.length();
+                builder.append(' ');
+            }
+            builder.append(" | ").append(row).append(newline);
+        }
+        appendSeparator(builder);
+        appendColumnLabels(builder);
+    }
+
+    private void appendSeparator(StringBuilder builder) {
+        builder.append("  +---+---+---+---+---+---+---+---+").append(newline);
+    }
+
+    private void appendColumnLabels(StringBuilder builder) {
+        builder.append("   ");
+        for (char c = Position.MIN_COLUMN; c <= Position.MAX_COLUMN; c++) {
+            builder.append(" ").append(c).append("  ");
+        }
+        builder.append(newline);
+    }
+
+    /**
+     * Bring the buffer up to date with a position, redrawing every square only if it holds another position
+     * @param state The position
+     * @return the frame; it is reused by the next call
+     */
+    public char[] render(GameState state) {
+        if (!rendered || renderedHash != state.getPositionHash()) {
+            for (int square = 0; square < offsets.length; square++) {
+                draw(state, square);
+            }
+            rendered = true;
+            renderedHash = state.getPositionHash();
+        }
+        return frame;
+    }
+
+    /**
+     * Bring the buffer up to date after a move, redrawing only the squares it changed
+     * @param hashBefore The hash of the position before the move
+     * @param state The position after the move
+     * @param changed The positions the move changed
+     * @return the frame; it is reused by the next call
+     */
+    public char[] update(long hashBefore, GameState state, Position... changed) {
+        if (!rendered || renderedHash != hashBefore) {
+            return render(state);
+        }
+        for (Position position : changed) {
+            draw(state, position.getY() * 8 + position.getX());
+        }
+        renderedHash = state.getPositionHash();
+        return frame;
+    }
+
+    private void draw(GameState state, int square) {
+        Piece piece = state.getPieces().get(PositionFactory.getPosition(square));
+        frame[offsets[square]] = piece == null ? empty : piece.getIdentifier();
+    }
+
+    /**
+     * @return the current frame as a string, without the final line separator
+     */
+    @Override
+    public String toString() {
+        return new String(frame, 0, frame.length - newline.length());
+    }
+}
@@ -1,8 +1,21 @@
 package chess;
 
-import chess.pieces.Piece;
+import chess.batch.BatchAnalyzer;
+import chess.broadcast.GameBroadcaster;
+import chess.broadcast.SpectatorServer;
+import chess.cache.AnalysisCache;
+import chess.metrics.CommandEvent;
+import chess.metrics.EngineMetrics;
+import chess.tablebase.Tablebase;
+import chess.tablebase.Tablebases;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.regex.Pattern;
 
 /**
@@ -16,6 +29,25 @@ public class ChessGame {
     /** Regular expression to capture specific moves*/
     private static final Pattern MOVE_PATTERN = Pattern.compile("^move\\s+[a-h][1-8]\\s+[a-h][1-8]\\s*$");
 
+    /** The command words, under which command latencies are recorded */
+    private static final Set<String> COMMANDS = new HashSet<>(Arrays.asList("help", "new", "quit", "board", "compact",
+            "list", "probe", "undo", "redo", "branch", "goto", "move", "moves", "load-moves"));
+
+    private static final Pattern GOTO_PATTERN = Pattern.compile("^goto\\s+#?\\d+\\s*$");
+
+    /**
+     * Legal moves and check status of the positions seen by every game in this JVM. Sized by the
+     * "chess.analysisCache" property, in legal moves summed over the cached positions. The default
+     * holds a couple of thousand positions, a few MB, which covers the games of an interactive session.
+     */
+    private static final AnalysisCache ANALYSIS_CACHE = new AnalysisCache(Long.getLong("chess.analysisCache", 1 << 16));
+
+    static {
+        if (EngineMetrics.ENABLED) {
+            ANALYSIS_CACHE.register("games");
+        }
+    }
+
     /** convenience fields for input*/
     private final BufferedReader inReader;
     private final PrintStream outStream;
@@ -23,6 +55,27 @@ public class ChessGame {
     /** The state of an active chess game*/
     private GameState gameState = null;
 
+    /** Every line played in the current game */
+    private VariationTree tree = null;
+
+    /** Renders the full board */
+    private final BoardRenderer boardRenderer = new BoardRenderer(NEWLINE, false);
+
+    /** Renders the board on a single line */
+    private final BoardRenderer compactRenderer = new BoardRenderer(NEWLINE, true);
+
+    /** Whether the board is shown on a single line */
+    private boolean compact = false;
+
+    /** Reads the moves of the "moves" and "load-moves" commands */
+    private final MoveScanner moveScanner = new MoveScanner();
+
+    /** Streams the game to spectators when the "chess.spectators" property names a port */
+    private GameBroadcaster broadcaster = null;
+
+    /** Endgame tables, loaded on first use from the directory in the "chess.tablebases" property */
+    private Tablebases tablebases = null;
+
     public ChessGame(InputStream inputStream, PrintStream outStream) {
         this.inReader = new BufferedReader(new InputStreamReader(inputStream));
         this.outStream = outStream;
@@ -55,10 +108,19 @@ public class ChessGame {
      */
     public void startEventLoop() {
         writeOutput("Type 'help' for a list of commands.");
+        startSpectatorServer();
         doNewGame();
 
+        CommandEvent event = null;
+        String command = null;
+        long start = 0;
         while (true) {
             showBoard();
+            if (command != null) {
+                // a command is timed until the board it changed is shown
+                recordCommand(event, command, start);
+                command = null;
+            }
             String currentPlayer = gameState.getCurrentPlayer().toString();
             writeOutput(currentPlayer + "'s Move");
 
@@ -66,40 +128,159 @@ public class ChessGame {
             if (input == null) {
                 break; // No more input possible; this is the only way to exit the event loop
             } else if (input.length() > 0) {
-                if (input.equals("help")) {
-                    showCommands();
-                } else if (input.equals("new")) {
-                    doNewGame();
-                } else if (input.equals("quit")) {
-                    writeOutput("Goodbye!");
-                    System.exit(0);
-                } else if (input.equals("board")) {
-                    writeOutput("Current Game:");
-                } else if (input.equals("list")) {
-                    writeOutput(gameState.list());
-                } else if (MOVE_PATTERN.matcher(input).find()) {
-                    String[] args = input.split("\\s+");
-                    if (!gameState.move(args[1], args[2])) {
-                        writeOutput("Invalid move");
-                    } 
-                    else if (gameState.isCheckMate()) {
-                        showBoard();
-                        writeOutput("The game is over. Congrats to " + currentPlayer + ".");
-                        System.exit(0);
-                    } else if (gameState.isDraw()) {
-                        showBoard();
-                        writeOutput("The game is over. It's Draw.");
-                        System.exit(0);
-                    }
-                    else if (gameState.isCheck()) {
-                        showBoard();
-                        String otherPlayer = (gameState.getCurrentPlayer() == Player.White ? Player.Black.toString() : Player.White.toString());
-                        writeOutput("Check! " + otherPlayer + " must save the king!" );
+                event = new CommandEvent();
+                event.begin();
+                start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+                command = commandName(input);
+                doCommand(input, currentPlayer);
+            }
+        }
+    }
+
+    /**
+     * Execute one line of input
+     * @param input The line typed by the user
+     * @param currentPlayer The player who typed it
+     */
+    private void doCommand(String input, String currentPlayer) {
+        if (input.equals("help")) {
+            showCommands();
+        } else if (input.equals("new")) {
+            doNewGame();
+        } else if (input.equals("quit")) {
+            writeOutput("Goodbye!");
+            System.exit(0);
+        } else if (input.equals("board")) {
+            writeOutput("Current Game:");
+        } else if (input.equals("compact")) {
+            compact = !compact;
+        } else if (input.equals("list")) {
+            writeOutput(gameState.getSnapshot().list());
+        } else if (input.equals("probe")) {
+            doProbe();
+        } else if (input.equals("undo")) {
+            restore(tree.undo(), "Nothing to undo");
+        } else if (input.equals("redo")) {
+            restore(tree.redo(), "Nothing to redo");
+        } else if (input.equals("branch")) {
+            showBranches();
+        } else if (GOTO_PATTERN.matcher(input).find()) {
+            String number = input.substring(4).trim().replace("#", "");
+            int id;
+            try {
+                id = Integer.parseInt(number);
+            } catch (NumberFormatException e) {
+                id = Integer.MAX_VALUE; // too many digits to name a position
+            }
+            if (id < tree.size()) {
+                restore(tree.goTo(id), null);
+            } else {
+                writeOutput("No position #" + number);
+            }
+        } else if (MOVE_PATTERN.matcher(input).find()) {
+            String[] args = input.split("\\s+");
+            if (!makeMove(args[1], args[2])) {
+                writeOutput("Invalid move");
+            } else {
+                showGameStatus(currentPlayer);
+            }
+        } else if (input.startsWith("moves ")) {
+            doMoves(input, "moves ".length());
+        } else if (input.startsWith("load-moves ")) {
+            String file = input.substring("load-moves ".length()).trim();
+            try {
+                doMoves(new String(Files.readAllBytes(Paths.get(file)), StandardCharsets.UTF_8), 0);
+            } catch (IOException e) {
+                writeOutput("Failed to read " + file + ": " + e.getMessage());
+            }
+        } else {
+            writeOutput("I didn't understand that.  Type 'help' for a list of commands.");
+        }
+    }
+
+    /**
+     * Announce the end of the game or a check after a move
+     * @param mover The player who made the move
+     */
+    private void showGameStatus(String mover) {
+        if (gameState.getSnapshot().isCheckMate()) {
+            showBoard();
+            writeOutput("The game is over. Congrats to " + mover + ".");
+            System.exit(0);
+        } else if (gameState.getSnapshot().isDraw()) {
+            showBoard();
+            writeOutput("The game is over. It's Draw.");
+            System.exit(0);
+        }
+        else if (gameState.getSnapshot().isCheck()) {
+            showBoard();
+            String otherPlayer = (gameState.getCurrentPlayer() == Player.White ? Player.Black.toString() : Player.White.toString());
+            writeOutput("Check! " + otherPlayer + " must save the king!" );
+        }
+    }
+
+    /**
+     * Play a series of moves in one go, adding each to the variation tree. The position is
+     * published and rendered once, after the last move. The series stops at the first move that
+     * can not be played, reporting whether the game had ended before it.
+     * @param moves The moves in coordinate notation, see {@link MoveScanner}
+     * @param offset The index of the first move in the text
+     */
+    private void doMoves(CharSequence moves, int offset) {
+        moveScanner.reset(moves, offset);
+        int played = 0;
+        String mover = null;
+        try {
+            for (int move = moveScanner.next(); move != MoveScanner.END; move = moveScanner.next()) {
+                Position start = PositionFactory.getPosition(MoveScanner.start(move));
+                Position end = PositionFactory.getPosition(MoveScanner.end(move));
+                Player player = gameState.getCurrentPlayer();
+                if (!gameState.applyMove(start, end)) {
+                    if (gameState.isDraw()) {
+                        writeOutput("The game ended after " + played + " moves; " + start + end + " and the moves after it were not played");
+                    } else {
+                        writeOutput("Invalid move " + start + end + " after " + played + " moves");
                     }
-                } else {
-                    writeOutput("I didn't understand that.  Type 'help' for a list of commands.");
+                    break;
                 }
+                tree.play(start, end, gameState);
+                mover = player.toString();
+                played++;
             }
+        } catch (IllegalArgumentException e) {
+            writeOutput(e.getMessage() + " after " + played + " moves");
+        }
+        if (played > 0) {
+            gameState.publish();
+            writeOutput("Played " + played + " moves");
+            showGameStatus(mover);
+        }
+    }
+
+    /**
+     * Name a command for its latency metrics
+     * @param input The line typed by the user
+     * @return the command word if it is a known command, otherwise "other", so that mistyped
+     * input does not add a histogram of its own
+     */
+    private static String commandName(String input) {
+        String word = input.trim().split("\\s+")[0];
+        return COMMANDS.contains(word) ? word : "other";
+    }
+
+    /**
+     * Publish the latency of a command
+     * @param event The JFR event started with the command
+     * @param command The command name
+     * @param start The start time of the command, if metrics are enabled
+     */
+    private static void recordCommand(CommandEvent event, String command, long start) {
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.get().command(command, System.nanoTime() - start);
+        }
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.commit();
         }
     }
 
@@ -108,91 +289,150 @@ public class ChessGame {
      */
     private void doNewGame() {
         gameState = new GameState();
+        gameState.setAnalysisCache(ANALYSIS_CACHE);
         gameState.reset();
+        tree = new VariationTree(gameState);
+        if (broadcaster != null) {
+            gameState.addSnapshotListener(broadcaster::publish);
+            broadcaster.publish(gameState.getSnapshot());
+        }
     }
 
     /**
-     * Show the current chess board
+     * Open the game to spectators if the "chess.spectators" property names a port
      */
-    private void showBoard() {
-        writeOutput(getBoardAsString());
+    private void startSpectatorServer() {
+        String port = System.getProperty("chess.spectators");
+        if (port == null) {
+            return;
+        }
+        GameBroadcaster games = new GameBroadcaster(1024);
+        try {
+            SpectatorServer server = new SpectatorServer(games, Integer.parseInt(port));
+            broadcaster = games;
+            writeOutput("Spectators can connect to port " + server.getPort());
+        } catch (IOException e) {
+            writeOutput("Failed to open port " + port + " to spectators: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            // not a number, or out of the port range
+            writeOutput("Failed to open port " + port + " to spectators: not a port number");
+        }
     }
 
     /**
-     * List the available commands.
+     * Set the board to a position of the variation tree
+     * @param node The node, or null if there is nothing to go to
+     * @param missing The message when there is nothing to go to
      */
-    private void showCommands() {
-        writeOutput("Possible commands: ");
-        writeOutput("    'help'                       Show this menu");
-        writeOutput("    'quit'                       Quit Chess");
-        writeOutput("    'new'                        Create a new game");
-        writeOutput("    'board'                      Show the chess board");
-        writeOutput("    'list'                       List all possible moves");
-        writeOutput("    'move <colrow> <colrow>'     Make a move");
+    private void restore(VariationTree.Node node, String missing) {
+        if (node == null) {
+            writeOutput(missing);
+        } else {
+            tree.restore(gameState);
+        }
     }
 
     /**
-     * Display the board for the user(s)
+     * List the current position and the variations played from it
      */
-    public String getBoardAsString() {
-        StringBuilder builder = new StringBuilder();
-        builder.append(NEWLINE);
-
-        printColumnLabels(builder);
-        for (int i = Position.MAX_ROW; i >= Position.MIN_ROW; i--) {
-            printSeparator(builder);
-            printSquares(i, builder);
+    private void showBranches() {
+        VariationTree.Node current = tree.getCurrent();
+        writeOutput("At " + current);
+        if (current.getChildren().isEmpty()) {
+            writeOutput("No moves played from here");
+        }
+        for (VariationTree.Node child : current.getChildren()) {
+            writeOutput("    " + child);
         }
-
-        printSeparator(builder);
-        printColumnLabels(builder);
-
-        return builder.toString();
     }
 
     /**
-     * Display the rows/columns of the chess board.
-     * 
-     * @param rowLabel The name of the current row
-     * @param builder The string output for the board.
+     * Look up the current position in the endgame tables
      */
-    private void printSquares(int rowLabel, StringBuilder builder) {
-        builder.append(rowLabel);
+    private void doProbe() {
+        if (tablebases == null) {
+            try {
+                tablebases = Tablebases.load(Paths.get(System.getProperty("chess.tablebases", "tablebases")));
+            } catch (IOException e) {
+                writeOutput("Failed to load tablebases: " + e.getMessage());
+                return;
+            }
+        }
+        writeOutput(Tablebase.describe(tablebases.probe(gameState)));
+    }
 
-        for (char c = Position.MIN_COLUMN; c <= Position.MAX_COLUMN; c++) {
-            Piece piece = gameState.getPieceAt(String.valueOf(c) + rowLabel);
-            char pieceChar = piece == null ? ' ' : piece.getIdentifier();
-            builder.append(" | ").append(pieceChar);
+    /**
+     * Make a move, patch the two squares it changed on the rendered board and add it to the variation tree
+     * @param start The starting position of the move
+     * @param end The ending position of the move
+     * @return true if the move was legal
+     */
+    private boolean makeMove(String start, String end) {
+        long hashBefore = gameState.getPositionHash();
+        if (!gameState.move(start, end)) {
+            return false;
         }
-        builder.append(" | ").append(rowLabel).append(NEWLINE);
+        Position startPosition = new Position(start);
+        Position endPosition = new Position(end);
+        renderer().update(hashBefore, gameState, startPosition, endPosition);
+        tree.play(startPosition, endPosition, gameState);
+        return true;
     }
 
     /**
-     * Convenience function to print row/col separators
-     * @param builder The string output for the board.
+     * @return the renderer of the current display mode
      */
-    private void printSeparator(StringBuilder builder) {
-        builder.append("  +---+---+---+---+---+---+---+---+").append(NEWLINE);
+    private BoardRenderer renderer() {
+        return compact ? compactRenderer : boardRenderer;
     }
 
     /**
-     * Convenience function to display colums
-     * @param builder The string output for the board.
+     * Show the current chess board, in a single write
      */
-    private void printColumnLabels(StringBuilder builder) {
-        builder.append("   ");
-        for (char c = Position.MIN_COLUMN; c <= Position.MAX_COLUMN; c++) {
-            builder.append(" ").append(c).append("  ");
-        }
+    private void showBoard() {
+        this.outStream.print(renderer().render(gameState));
+    }
 
-        builder.append(NEWLINE);
+    /**
+     * List the available commands.
+     */
+    private void showCommands() {
+        writeOutput("Possible commands: ");
+        writeOutput("    'help'                       Show this menu");
+        writeOutput("    'quit'                       Quit Chess");
+        writeOutput("    'new'                        Create a new game");
+        writeOutput("    'board'                      Show the chess board");
+        writeOutput("    'compact'                    Toggle showing the board on a single line");
+        writeOutput("    'list'                       List all possible moves");
+        writeOutput("    'probe'                      Look up the position in the endgame tablebases");
+        writeOutput("    'move <colrow> <colrow>'     Make a move");
+        writeOutput("    'moves e2e4 e7e5 ...'        Make a series of moves");
+        writeOutput("    'load-moves <file>'          Make the series of moves listed in a file");
+        writeOutput("    'undo'                       Take back the last move");
+        writeOutput("    'redo'                       Replay the move taken back last");
+        writeOutput("    'branch'                     List the variations played from this position");
+        writeOutput("    'goto <n>'                   Go to position #n of any variation");
+    }
+
+    /**
+     * Display the board for the user(s)
+     */
+    public String getBoardAsString() {
+        boardRenderer.render(gameState);
+        return boardRenderer.toString();
     }
 
     /**
      * Main driver
-     * @param args command line arguments
+     * @param args command line arguments; "--batch" followed by the batch options runs headless
+     * @throws Exception if a batch run fails
+     * @see BatchAnalyzer#main(String[])
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            BatchAnalyzer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         ChessGame cli = new ChessGame(System.in, System.out);
         cli.startEventLoop();
     }
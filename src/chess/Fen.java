@@ -0,0 +1,126 @@
+package chess;
+
+import chess.pieces.Bishop;
+import chess.pieces.King;
+import chess.pieces.Knight;
+import chess.pieces.Pawn;
+import chess.pieces.Piece;
+import chess.pieces.Queen;
+import chess.pieces.Rook;
+
+/**
+ * Reads and writes positions in Forsyth-Edwards Notation.
+ * Only the piece placement and the side to move are used; this game has no castling, en passant
+ * or move clocks, so the remaining fields are ignored when reading and written as "- - 0 1".
+ * As usual in FEN, upper case letters are white pieces.
+ */
+public final class Fen {
+
+    /** The starting position */
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w - - 0 1";
+
+    private Fen() {
+    }
+
+    /**
+     * Parse a FEN string into a new game
+     * @param fen The FEN string
+     * @return the game in that position
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public static GameState parse(String fen) {
+        GameState state = new GameState();
+        parse(fen, state);
+        return state;
+    }
+
+    /**
+     * Parse a FEN string into an existing game, replacing its position
+     * @param fen The FEN string
+     * @param state The game to set up
+     * @throws IllegalArgumentException if the string is not valid FEN
+     */
+    public static void parse(String fen, GameState state) {
+        String[] fields = fen.trim().split("\\s+");
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != Position.MAX_ROW) {
+            throw new IllegalArgumentException("Expected 8 ranks in FEN: " + fen);
+        }
+        state.clear();
+        for (int i = 0; i < ranks.length; i++) {
+            int row = Position.MAX_ROW - i;
+            char column = Position.MIN_COLUMN;
+            for (char c : ranks[i].toCharArray()) {
+                if (Character.isDigit(c)) {
+                    column += Character.digit(c, 10);
+                } else {
+                    if (column > Position.MAX_COLUMN) {
+                        throw new IllegalArgumentException("Rank " + row + " is too long in FEN: " + fen);
+                    }
+                    state.placePiece(new Position(column, row), createPiece(c, fen));
+                    column++;
+                }
+            }
+            if (column != Position.MAX_COLUMN + 1) {
+                throw new IllegalArgumentException("Rank " + row + " does not have 8 squares in FEN: " + fen);
+            }
+        }
+        if (fields.length > 1 && !fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new IllegalArgumentException("Side to move must be 'w' or 'b' in FEN: " + fen);
+        }
+        state.setCurrentPlayer(fields.length > 1 && fields[1].equals("b") ? Player.Black : Player.White);
+        state.publish();
+    }
+
+    private static Piece createPiece(char c, String fen) {
+        Player owner = Character.isUpperCase(c) ? Player.White : Player.Black;
+        switch (Character.toLowerCase(c)) {
+            case 'k':
+                return new King(owner);
+            case 'q':
+                return new Queen(owner);
+            case 'r':
+                return new Rook(owner);
+            case 'b':
+                return new Bishop(owner);
+            case 'n':
+                return new Knight(owner);
+            case 'p':
+                return new Pawn(owner);
+            default:
+                throw new IllegalArgumentException("Unknown piece '" + c + "' in FEN: " + fen);
+        }
+    }
+
+    /**
+     * Write a game as FEN
+     * @param state The game
+     * @return the FEN string
+     */
+    public static String format(GameState state) {
+        StringBuilder builder = new StringBuilder();
+        for (int row = Position.MAX_ROW; row >= Position.MIN_ROW; row--) {
+            int empty = 0;
+            for (char column = Position.MIN_COLUMN; column <= Position.MAX_COLUMN; column++) {
+                Piece piece = state.getPieces().get(new Position(column, row));
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    builder.append(empty);
+                    empty = 0;
+                }
+                char letter = Character.toLowerCase(piece.getIdentifier());
+                builder.append(piece.getOwner() == Player.White ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                builder.append(empty);
+            }
+            if (row > Position.MIN_ROW) {
+                builder.append('/');
+            }
+        }
+        return builder.append(state.getCurrentPlayer() == Player.White ? " w" : " b").append(" - - 0 1").toString();
+    }
+}
@@ -0,0 +1,163 @@
+package chess;
+
+import chess.cache.AnalysisCache;
+import chess.pieces.Piece;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable copy of a position, published by a {@link GameState} for concurrent readers.
+ *
+ * The queries never touch the live game: each one is answered on a private copy of the position
+ * owned by the calling thread, and the answer is remembered, so a position that many readers look
+ * at is analysed about once. Any number of threads may query a snapshot without locking while the
+ * writer keeps playing moves on the game.
+ */
+public final class GameSnapshot {
+
+    /** Publication number, increasing with every snapshot of the same game */
+    private final long version;
+
+    /** The player to move */
+    private final Player currentPlayer;
+
+    /** Zobrist hash of the position */
+    private final long hash;
+
+    /** The pieces, keyed by position */
+    private final Map<Position, Piece> pieces;
+
+    /** The analysis cache of the game, or null */
+    private final AnalysisCache analysisCache;
+
+    /** Legal moves, computed on first use */
+    private volatile Map<Position, Set<Position>> legalMoves;
+
+    /** Whether the player to move is in check, computed on first use */
+    private volatile Boolean check;
+
+    GameSnapshot(long version, Player currentPlayer, long hash, Map<Position, Piece> board, AnalysisCache analysisCache) {
+        this.version = version;
+        this.currentPlayer = currentPlayer;
+        this.hash = hash;
+        this.pieces = Collections.unmodifiableMap(new HashMap<>(board));
+        this.analysisCache = analysisCache;
+    }
+
+    /**
+     * @return the publication number; a higher number is a later position of the same game
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the player whose turn it is
+     */
+    public Player getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    /**
+     * @return the Zobrist hash of the position
+     */
+    public long getPositionHash() {
+        return hash;
+    }
+
+    /**
+     * @return the pieces on the board, keyed by position
+     */
+    public Map<Position, Piece> getPieces() {
+        return pieces;
+    }
+
+    /**
+     * @return the analysis cache of the game, or null
+     */
+    AnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    /**
+     * Get the piece at the position specified by the String
+     * @param colrow The string indication of position; i.e. "d5"
+     * @return The piece at that position, or null if it does not exist.
+     */
+    public Piece getPieceAt(String colrow) {
+        return pieces.get(new Position(colrow));
+    }
+
+    /**
+     * All legal moves of the current player
+     * @return the legal end positions for every start position, read-only
+     */
+    public Map<Position, Set<Position>> getLegalMoves() {
+        Map<Position, Set<Position>> moves = legalMoves;
+        if (moves == null) {
+            moves = new HashMap<>();
+            for (Map.Entry<Position, Set<Position>> entry : scratch().getLegalMoves().entrySet()) {
+                moves.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+            }
+            legalMoves = moves = Collections.unmodifiableMap(moves);
+        }
+        return moves;
+    }
+
+    /**
+     * @return true if the player to move is in check
+     */
+    public boolean isCheck() {
+        Boolean result = check;
+        if (result == null) {
+            check = result = scratch().isCheck();
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the player to move is in check and has no legal move
+     */
+    public boolean isCheckMate() {
+        return isCheck() && isDraw();
+    }
+
+    /**
+     * @return true if the player to move has no legal move
+     */
+    public boolean isDraw() {
+        for (Set<Position> endPositions : getLegalMoves().values()) {
+            if (!endPositions.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * All possible moves, one per line, like {@link GameState#list()}
+     * @return the moves
+     */
+    public String list() {
+        StringBuilder sb = new StringBuilder();
+        getLegalMoves().forEach((key, value) -> value.forEach(p -> sb.append(key).append(" ").append(p).append("\n")));
+        return sb.toString();
+    }
+
+    /**
+     * @return a new game in this position, e.g. to analyse or play on
+     */
+    public GameState toGameState() {
+        return scratch();
+    }
+
+    /**
+     * @return a private, mutable copy of the position for the calling thread
+     */
+    private GameState scratch() {
+        return new GameState(this);
+    }
+}
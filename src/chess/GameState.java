@@ -1,37 +1,146 @@
 package chess;
 
 
+import chess.board.BoardRepresentation;
+import chess.board.BoardType;
+import chess.cache.AnalysisCache;
+import chess.cache.PositionAnalysis;
+import chess.metrics.EngineMetrics;
+import chess.metrics.GameOverCheckEvent;
+import chess.metrics.MoveGenerationEvent;
+import chess.nnue.NnueAccumulator;
 import chess.pieces.Bishop;
 import chess.pieces.King;
 import chess.pieces.Knight;
 import chess.pieces.Pawn;
 import chess.pieces.Piece;
+import chess.pieces.PieceType;
 import chess.pieces.Queen;
 import chess.pieces.Rook;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
  * Class that represents the current state of the game. 
  * Basically, what pieces are in which positions on the
  * board.
+ *
+ * A game is owned by one thread: the queries try moves on the board itself and take them back.
+ * Other threads read the game through the immutable {@link GameSnapshot} returned by
+ * {@link #getSnapshot()}, which is republished after every move.
  */
 public class GameState {
 
     /** The current player */
     private Player currentPlayer = Player.White;
 
-    /** A map of board positions to pieces at that position  */
-    private Map<Position, Piece> board;
+    /** The pieces, by square */
+    private final BoardRepresentation board;
+
+    /** Zobrist hash of the board and the player to move, kept up to date by every change */
+    private long hash;
+
+    /** Zobrist hash of the pawns alone, kept up to date by every change */
+    private long pawnHash;
+
+    /** Number of the last published snapshot */
+    private long version;
+
+    /** The last published snapshot, read by other threads */
+    private volatile GameSnapshot published;
+
+    /** Where the legal moves and check status of positions are looked up first, or null */
+    private AnalysisCache analysisCache;
+
+    /** Hidden layer of the evaluation network, updated with every piece put or taken off, or null */
+    private NnueAccumulator accumulator;
+
+    /** Called with every published snapshot, on the thread that owns the game */
+    private final List<Consumer<GameSnapshot>> snapshotListeners = new ArrayList<>();
 
     /** Create the game state. */
     public GameState() {
-        board = new HashMap<>();
+        this(BoardType.DEFAULT);
+    }
+
+    /**
+     * Create the game state on a given board representation
+     * @param type The board representation
+     */
+    public GameState(BoardType type) {
+        board = type.create();
+        publish();
+    }
+
+    /**
+     * Copy a game state. The copy does not use the analysis cache or accumulator of the original.
+     * @param other The state to copy
+     */
+    public GameState(GameState other) {
+        board = other.board.copy();
+        currentPlayer = other.currentPlayer;
+        hash = other.hash;
+        pawnHash = other.pawnHash;
+        publish();
+    }
+
+    /**
+     * Create a game in the position of a snapshot
+     * @param snapshot The snapshot, which becomes the published one of the new game
+     */
+    GameState(GameSnapshot snapshot) {
+        board = BoardType.DEFAULT.create();
+        snapshot.getPieces().forEach((position, piece) -> {
+            board.put(square(position), piece);
+            if (piece.getType() == PieceType.PAWN) {
+                pawnHash ^= Zobrist.key(piece, position);
+            }
+        });
+        currentPlayer = snapshot.getCurrentPlayer();
+        hash = snapshot.getPositionHash();
+        version = snapshot.getVersion();
+        published = snapshot;
+        analysisCache = snapshot.getAnalysisCache();
+    }
+
+    /**
+     * Share the analysis of positions with other games. The legal moves and the check, checkmate
+     * and draw tests are then answered from the cache when the position was seen before.
+     * Searches should not use a cache; they reach too many positions that are never seen again.
+     * @param cache The cache, or null to analyse every position afresh
+     */
+    public void setAnalysisCache(AnalysisCache cache) {
+        analysisCache = cache;
+    }
+
+    /**
+     * Keep the hidden layer of an evaluation network in step with the board from now on
+     * @param accumulator The accumulator, which is rebuilt from the current position; null to stop
+     */
+    public void setAccumulator(NnueAccumulator accumulator) {
+        this.accumulator = accumulator;
+        if (accumulator != null) {
+            accumulator.clear();
+            for (long pieces = board.occupancy(); pieces != 0; pieces &= pieces - 1) {
+                int square = Long.numberOfTrailingZeros(pieces);
+                accumulator.add(board.get(square), square);
+            }
+        }
+    }
+
+    /**
+     * @return the accumulator kept in step with the board, or null
+     */
+    public NnueAccumulator getAccumulator() {
+        return accumulator;
     }
 
     /** 
@@ -42,105 +151,342 @@ public class GameState {
         return currentPlayer;
     }
 
+    /**
+     * Set the player whose turn it is
+     * @param player The player to move next
+     */
+    public void setCurrentPlayer(Player player) {
+        if (player != currentPlayer) {
+            revertPlayer();
+        }
+    }
+
+    /**
+     * Fetch the 64-bit hash of the position
+     * @return the Zobrist hash of the pieces and the player to move
+     * @see Zobrist
+     */
+    public long getPositionHash() {
+        return hash;
+    }
+
+    /**
+     * Fetch the 64-bit hash of the pawns. It changes far less often than the position hash, so
+     * anything computed from the pawns alone can be cached under it.
+     * @return the Zobrist hash of the pawns of both players; 0 without pawns
+     */
+    public long getPawnHash() {
+        return pawnHash;
+    }
+
+    /**
+     * Fetch the last published position. Safe to call from any thread, without locking.
+     * @return the snapshot published by the last move, {@link #reset()} or {@link #publish()}
+     */
+    public GameSnapshot getSnapshot() {
+        return published;
+    }
+
+    /**
+     * Publish the current position to the readers of {@link #getSnapshot()}. Moves and
+     * {@link #reset()} publish by themselves; call this after setting up a position piece by piece.
+     * @return the new snapshot
+     */
+    public GameSnapshot publish() {
+        GameSnapshot snapshot = new GameSnapshot(++version, currentPlayer, hash, board.asMap(), analysisCache);
+        published = snapshot;
+        for (Consumer<GameSnapshot> listener : snapshotListeners) {
+            listener.accept(snapshot);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Register a listener for the published positions
+     * @param listener Called with every snapshot published from now on, on the thread that owns the game
+     */
+    public void addSnapshotListener(Consumer<GameSnapshot> listener) {
+        snapshotListeners.add(listener);
+    }
+
+    /**
+     * Read-only view of the board, keyed by position
+     * @return The pieces currently on the board
+     */
+    public Map<Position, Piece> getPieces() {
+        return board.asMap();
+    }
+
     /**
      * All possible moves for the remaining pieces and their moves.
      * @return
      */
     public String list() {
         StringBuilder sb = new StringBuilder();
-        Map<Position, Set<Position>> moves = generatePossibleMoves();
-        moves.forEach(this::filterCheck);
+        Map<Position, Set<Position>> moves = getLegalMoves();
         moves.forEach((key, value) -> value.forEach(p -> sb.append(key).append(" ").append(p).append("\n")));
         return sb.toString();
     }
 
+    /**
+     * All legal moves of the current player
+     * @return the legal end positions for every start position of the current player;
+     * read-only and shared if an analysis cache is set
+     */
+    public Map<Position, Set<Position>> getLegalMoves() {
+        return analysisCache != null ? analyse().getLegalMoves() : generateLegalMoves();
+    }
+
+    /**
+     * Look up the position in the analysis cache, analysing and adding it if it is missing
+     * @return the analysis of the position
+     */
+    private PositionAnalysis analyse() {
+        PositionAnalysis analysis = analysisCache.get(hash);
+        if (analysis == null) {
+            analysis = new PositionAnalysis(generateLegalMoves(), isKingAttacked());
+            analysisCache.put(hash, analysis);
+        }
+        return analysis;
+    }
+
+    private Map<Position, Set<Position>> generateLegalMoves() {
+        MoveGenerationEvent event = new MoveGenerationEvent();
+        event.begin();
+        Map<Position, Set<Position>> moves = generatePossibleMoves();
+        int pseudoLegalMoves = event.isEnabled() ? countMoves(moves) : 0;
+        // the trial moves are all taken back, so the accumulator need not follow them
+        NnueAccumulator saved = accumulator;
+        accumulator = null;
+        try {
+            moves.forEach(this::filterCheck);
+        } finally {
+            accumulator = saved;
+        }
+        if (event.shouldCommit()) {
+            event.player = currentPlayer.toString();
+            event.pseudoLegalMoves = pseudoLegalMoves;
+            event.legalMoves = countMoves(moves);
+            event.commit();
+        }
+        return moves;
+    }
+
+    private static int countMoves(Map<Position, Set<Position>> moves) {
+        int count = 0;
+        for (Set<Position> endPositions : moves.values()) {
+            count += endPositions.size();
+        }
+        return count;
+    }
+
     public boolean isCheckMate() {
+        GameOverCheckEvent event = new GameOverCheckEvent();
+        event.begin();
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
         // Checkmate: if king under attack and after all possible moves it is still under attack
-        Position kingPosition = getKingPosition();
-        revertPlayer();
-        // if we can attack king
-        boolean check = generatePossiblePositions().contains(kingPosition);
-        revertPlayer();
-
-        return check && isDraw();
+        boolean checkMate = analysisCache != null ? analyse().isCheckMate() : isKingAttacked() && hasNoLegalMove();
+        recordGameOverCheck(event, "checkmate", checkMate, start);
+        return checkMate;
     }
     
     public boolean isCheck() {
+        GameOverCheckEvent event = new GameOverCheckEvent();
+        event.begin();
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+        boolean check = analysisCache != null ? analyse().isCheck() : isKingAttacked();
+        recordGameOverCheck(event, "check", check, start);
+        return check;
+    }
+
+    public boolean isDraw() {
+        GameOverCheckEvent event = new GameOverCheckEvent();
+        event.begin();
+        long start = EngineMetrics.ENABLED ? System.nanoTime() : 0;
+        // opponent can't move
+        boolean draw = analysisCache != null ? analyse().isDraw() : hasNoLegalMove();
+        recordGameOverCheck(event, "draw", draw, start);
+        return draw;
+    }
+
+    /**
+     * Test whether the current player's king is under attack, by generating the opponent's moves
+     * @return true if the king is in check
+     */
+    private boolean isKingAttacked() {
         // Checkmate: if king under attack 
         Position kingPosition = getKingPosition();
         revertPlayer();
         // if we can attack king
         boolean check = generatePossiblePositions().contains(kingPosition);
         revertPlayer();
-
         return check;
     }
 
-    public boolean isDraw() {
-        Map<Position, Set<Position>> moves = generatePossibleMoves();
-        moves.forEach(this::filterCheck);
-        // opponent can't move
-        return 0 == moves.values()
-                .stream()
-                .flatMap(Set::stream)
-                .collect(Collectors.toSet())
-                .size();
+    /**
+     * Test whether the current player has no legal move, without recording it as a game over check
+     * @return true if every move leaves the king in check, or there is no move at all
+     */
+    private boolean hasNoLegalMove() {
+        return countMoves(generateLegalMoves()) == 0;
+    }
+
+    /**
+     * Publish the outcome of a check, checkmate or draw test
+     * @param event The JFR event started with the test
+     * @param test The name of the test
+     * @param result The outcome
+     * @param start The start time of the test, if metrics are enabled
+     */
+    private static void recordGameOverCheck(GameOverCheckEvent event, String test, boolean result, long start) {
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.get().gameOverCheck(System.nanoTime() - start);
+        }
+        if (event.shouldCommit()) {
+            event.test = test;
+            event.result = result;
+            event.commit();
+        }
     }
 
     public boolean move(String start, String end) {
         Position startPosition = new Position(start);
         Position endPosition = new Position(end);
         // is move valid
-        Map<Position, Set<Position>> moves = generatePossibleMoves();
-        moves.forEach(this::filterCheck);
-        if (!moves.get(startPosition).contains(endPosition)) {
+        Map<Position, Set<Position>> moves = getLegalMoves();
+        Set<Position> endPositions = moves.get(startPosition);
+        if (endPositions == null || !endPositions.contains(endPosition)) {
             return false;
         }
         // make move
         move(startPosition, endPosition);
         revertPlayer();
+        publish();
         return true;
     }
 
+    /**
+     * Execute a move if it is legal and pass the turn, without publishing the new position.
+     * Only the moves of the piece that moves are generated, so a long series of moves costs far
+     * less than with {@link #move(String, String)}; call {@link #publish()} at the end of the series.
+     * @param start the starting position
+     * @param end the ending position
+     * @return true if the move was legal and made, false if the game is unchanged
+     */
+    public boolean applyMove(Position start, Position end) {
+        int from = square(start);
+        Piece piece = board.get(from);
+        if (piece == null || piece.getOwner() != currentPlayer) {
+            return false;
+        }
+        PieceType type = piece.getType();
+        Set<Position> reachable = type == PieceType.PAWN ? generatePossibleMovesForPawn(from) : generatePossibleMoves(from, type);
+        if (!reachable.contains(end)) {
+            return false;
+        }
+        Piece captured = makeMove(start, end);
+        revertPlayer();
+        boolean check = isKingAttacked();
+        revertPlayer();
+        if (check) {
+            unmakeMove(start, end, captured);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Execute a move without validating it and pass the turn. Used by searches, which only play legal moves.
+     * @param start the starting position
+     * @param end the ending position
+     * @return the captured piece, or null
+     * @see #unmakeMove(Position, Position, Piece)
+     */
+    public Piece makeMove(Position start, Position end) {
+        Piece captured = putPiece(end, removePiece(start));
+        revertPlayer();
+        return captured;
+    }
+
+    /**
+     * Take back a move made by {@link #makeMove(Position, Position)}
+     * @param start the starting position of the move
+     * @param end the ending position of the move
+     * @param captured the piece returned by makeMove
+     */
+    public void unmakeMove(Position start, Position end, Piece captured) {
+        revertPlayer();
+        putPiece(start, removePiece(end));
+        if (captured != null) {
+            putPiece(end, captured);
+        }
+    }
+
     /**
      * Call to initialize the game state into the starting positions
      */
     public void reset() {
         // White Pieces
-        board.put(new Position("a1"), new Rook(Player.White));
-        board.put(new Position("b1"), new Knight(Player.White));
-        board.put(new Position("c1"), new Bishop(Player.White));
-        board.put(new Position("d1"), new Queen(Player.White));
-        board.put(new Position("e1"), new King(Player.White));
-        board.put(new Position("f1"), new Bishop(Player.White));
-        board.put(new Position("g1"), new Knight(Player.White));
-        board.put(new Position("h1"), new Rook(Player.White));
-        board.put(new Position("a2"), new Pawn(Player.White));
-        board.put(new Position("b2"), new Pawn(Player.White));
-        board.put(new Position("c2"), new Pawn(Player.White));
-        board.put(new Position("d2"), new Pawn(Player.White));
-        board.put(new Position("e2"), new Pawn(Player.White));
-        board.put(new Position("f2"), new Pawn(Player.White));
-        board.put(new Position("g2"), new Pawn(Player.White));
-        board.put(new Position("h2"), new Pawn(Player.White));
+        putPiece(new Position("a1"), new Rook(Player.White));
+        putPiece(new Position("b1"), new Knight(Player.White));
+        putPiece(new Position("c1"), new Bishop(Player.White));
+        putPiece(new Position("d1"), new Queen(Player.White));
+        putPiece(new Position("e1"), new King(Player.White));
+        putPiece(new Position("f1"), new Bishop(Player.White));
+        putPiece(new Position("g1"), new Knight(Player.White));
+        putPiece(new Position("h1"), new Rook(Player.White));
+        putPiece(new Position("a2"), new Pawn(Player.White));
+        putPiece(new Position("b2"), new Pawn(Player.White));
+        putPiece(new Position("c2"), new Pawn(Player.White));
+        putPiece(new Position("d2"), new Pawn(Player.White));
+        putPiece(new Position("e2"), new Pawn(Player.White));
+        putPiece(new Position("f2"), new Pawn(Player.White));
+        putPiece(new Position("g2"), new Pawn(Player.White));
+        putPiece(new Position("h2"), new Pawn(Player.White));
 
         // Black Pieces
-        board.put(new Position("a8"), new Rook(Player.Black));
-        board.put(new Position("b8"), new Knight(Player.Black));
-        board.put(new Position("c8"), new Bishop(Player.Black));
-        board.put(new Position("d8"), new Queen(Player.Black));
-        board.put(new Position("e8"), new King(Player.Black));
-        board.put(new Position("f8"), new Bishop(Player.Black));
-        board.put(new Position("g8"), new Knight(Player.Black));
-        board.put(new Position("h8"), new Rook(Player.Black));
-        board.put(new Position("a7"), new Pawn(Player.Black));
-        board.put(new Position("b7"), new Pawn(Player.Black));
-        board.put(new Position("c7"), new Pawn(Player.Black));
-        board.put(new Position("d7"), new Pawn(Player.Black));
-        board.put(new Position("e7"), new Pawn(Player.Black));
-        board.put(new Position("f7"), new Pawn(Player.Black));
-        board.put(new Position("g7"), new Pawn(Player.Black));
-        board.put(new Position("h7"), new Pawn(Player.Black));
+        putPiece(new Position("a8"), new Rook(Player.Black));
+        putPiece(new Position("b8"), new Knight(Player.Black));
+        putPiece(new Position("c8"), new Bishop(Player.Black));
+        putPiece(new Position("d8"), new Queen(Player.Black));
+        putPiece(new Position("e8"), new King(Player.Black));
+        putPiece(new Position("f8"), new Bishop(Player.Black));
+        putPiece(new Position("g8"), new Knight(Player.Black));
+        putPiece(new Position("h8"), new Rook(Player.Black));
+        putPiece(new Position("a7"), new Pawn(Player.Black));
+        putPiece(new Position("b7"), new Pawn(Player.Black));
+        putPiece(new Position("c7"), new Pawn(Player.Black));
+        putPiece(new Position("d7"), new Pawn(Player.Black));
+        putPiece(new Position("e7"), new Pawn(Player.Black));
+        putPiece(new Position("f7"), new Pawn(Player.Black));
+        putPiece(new Position("g7"), new Pawn(Player.Black));
+        putPiece(new Position("h7"), new Pawn(Player.Black));
+        publish();
+    }
+
+    /**
+     * Remove every piece from the board, e.g. to set up an arbitrary position
+     */
+    public void clear() {
+        board.clear();
+        hash = Zobrist.key(currentPlayer);
+        pawnHash = 0;
+        if (accumulator != null) {
+            accumulator.clear();
+        }
+    }
+
+    /**
+     * Put a piece on the board, replacing whatever was there
+     * @param position The position to place the piece on
+     * @param piece The piece to place, or null to empty the square
+     */
+    public void placePiece(Position position, Piece piece) {
+        if (piece == null) {
+            removePiece(position);
+        } else {
+            putPiece(position, piece);
+        }
     }
 
     /**
@@ -149,7 +495,7 @@ public class GameState {
      * @return The piece at that position, or null if it does not exist.
      */
     public Piece getPieceAt(String colrow) {
-        return board.get(new Position(colrow));
+        return board.asMap().get(new Position(colrow));
     }
 
     /**
@@ -158,28 +504,70 @@ public class GameState {
      * @param end the ending position
      */
     private void move(Position start, Position end) {
-        board.put(end, board.remove(start));
+        putPiece(end, removePiece(start));
     }
 
     /**
-     * Set the alternate player
+     * Put a piece on the board, keeping the hash up to date
+     * @param position the position
+     * @param piece the piece to put there
+     * @return the piece that was there before, or null
      */
-    private void revertPlayer() {
-        currentPlayer = currentPlayer == Player.White ? Player.Black : Player.White;
+    private Piece putPiece(Position position, Piece piece) {
+        int square = square(position);
+        Piece previous = board.put(square, piece);
+        if (previous != null) {
+            hash ^= Zobrist.key(previous, position);
+            if (previous.getType() == PieceType.PAWN) {
+                pawnHash ^= Zobrist.key(previous, position);
+            }
+            if (accumulator != null) {
+                accumulator.remove(previous, square);
+            }
+        }
+        if (piece != null) {
+            hash ^= Zobrist.key(piece, position);
+            if (piece.getType() == PieceType.PAWN) {
+                pawnHash ^= Zobrist.key(piece, position);
+            }
+            if (accumulator != null) {
+                accumulator.add(piece, square);
+            }
+        }
+        return previous;
     }
 
     /**
-     * Determines if the current Piece is owned by the current player
-     * @param currentPiece The current Piece
-     * @return true of the Piece owner is the current player; false otherwise 
-     * @see Piece
+     * Take a piece off the board, keeping the hash up to date
+     * @param position the position
+     * @return the removed piece, or null
      */
-    private boolean isNotOwnPiece(Piece currentPiece) {
-        return currentPiece.getOwner() != currentPlayer;
+    private Piece removePiece(Position position) {
+        int square = square(position);
+        Piece previous = board.put(square, null);
+        if (previous != null) {
+            hash ^= Zobrist.key(previous, position);
+            if (previous.getType() == PieceType.PAWN) {
+                pawnHash ^= Zobrist.key(previous, position);
+            }
+            if (accumulator != null) {
+                accumulator.remove(previous, square);
+            }
+        }
+        return previous;
     }
 
-    private boolean attackItsOwnPiece(Piece attackedPiece) {
-        return attackedPiece != null && attackedPiece.getOwner() == currentPlayer;
+    private static int square(Position position) {
+        return position.getY() * 8 + position.getX();
+    }
+
+    /**
+     * Set the alternate player
+     */
+    private void revertPlayer() {
+        hash ^= Zobrist.key(currentPlayer);
+        currentPlayer = currentPlayer == Player.White ? Player.Black : Player.White;
+        hash ^= Zobrist.key(currentPlayer);
     }
 
     private Set<Position> generatePossiblePositions() {
@@ -196,12 +584,14 @@ public class GameState {
      * @see Position
      */
     private Position getKingPosition() {
-        return board.entrySet()
-                .stream()
-                .filter(e -> e.getValue() != null && e.getValue().getClass() == King.class && e.getValue().getOwner() == currentPlayer)
-                .findFirst()
-                .get()
-                .getKey();
+        for (long pieces = board.occupancy(); pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            Piece piece = board.get(square);
+            if (piece.getType() == PieceType.KING && piece.getOwner() == currentPlayer) {
+                return PositionFactory.getPosition(square);
+            }
+        }
+        throw new NoSuchElementException("No " + currentPlayer + " king");
     }
 
     /**
@@ -211,9 +601,11 @@ public class GameState {
      * @see Position
      */
     private void filterCheck(Position startPosition, Set<Position> possibleMoves) {
-    		
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.get().legalityTrials(possibleMoves.size());
+        }
         possibleMoves.removeIf(endPosition -> {
-            Piece attackedPiece = board.get(endPosition);
+            Piece attackedPiece = board.get(square(endPosition));
             // make move
             move(startPosition, endPosition);
 
@@ -227,7 +619,7 @@ public class GameState {
             // revert move
             move(endPosition, startPosition);
             if (attackedPiece != null) {
-                board.put(endPosition, attackedPiece);
+                putPiece(endPosition, attackedPiece);
             }
           
             return result;
@@ -235,319 +627,94 @@ public class GameState {
     }
 
     /**
-     * Populate the set of possible moves
-     * @param startPosition The starting position
-     * @param possibleMoves the set of viable moves that can be made
-     * @see Position
-     */
-    private void filterPossibleMoves(Position startPosition, Set<Position> possibleMoves) {
-        possibleMoves.removeIf(Objects::isNull); // clear from nulls
-        if (isNotOwnPiece(board.get(startPosition))) { // is not own piece
-            possibleMoves.clear();
-        }
-        possibleMoves.removeIf(endPosition -> attackItsOwnPiece(board.get(endPosition))); // attack its own piece
-    }
-
-    /**
-     * Create a set of possible moves for each Piece
+     * Create a set of possible moves for each Piece of the current player
      * @return The set of moves for each Piece on the board
      * @see Piece
      */
     private Map<Position, Set<Position>> generatePossibleMoves() {
+        if (EngineMetrics.ENABLED) {
+            EngineMetrics.get().positionGenerated();
+        }
         Map<Position, Set<Position>> moves = new HashMap<>();
-
-        // if we use board we get ConcurrentModificationException
-        new HashMap<>(board).forEach((position, piece) -> {
-            if (piece == null) {
-                return;
-            }
-            Class clazz = piece.getClass();
-            if (King.class.isAssignableFrom(clazz)) {
-                moves.put(position, generatePossibleMovesForKing(position));
-            } else if (Knight.class.isAssignableFrom(clazz)) {
-                moves.put(position, generatePossibleMovesForKnight(position));
-            } else if (Pawn.class.isAssignableFrom(clazz)) {
-                moves.put(position, generatePossibleMovesForPawn(position));
-            } else if (Rook.class.isAssignableFrom(clazz)) {
-                moves.put(position, generatePossibleMovesForRook(position));
-            } else if (Bishop.class.isAssignableFrom(clazz)) {
-                moves.put(position, generatePossibleMovesForBishop(position));
-            } else if (Queen.class.isAssignableFrom(clazz)) {
-                moves.put(position, generatePossibleMovesForQueen(position));
+        for (long pieces = board.occupancy(); pieces != 0; pieces &= pieces - 1) {
+            int square = Long.numberOfTrailingZeros(pieces);
+            Piece piece = board.get(square);
+            if (piece.getOwner() != currentPlayer) {
+                continue;
             }
-        });
-
-        moves.forEach(this::filterPossibleMoves);
-
+            PieceType type = piece.getType();
+            moves.put(PositionFactory.getPosition(square),
+                    type == PieceType.PAWN ? generatePossibleMovesForPawn(square) : generatePossibleMoves(square, type));
+        }
         return moves;
     }
 
-    /** 
-     * Generate moves for the knight
-     * @param startPosition the starting position
-     * @return a set of moves for the knight Piece
-     * @see Knight
+    /**
+     * Generate the moves of any piece but the pawn, by stepping along the offsets of its type
+     * @param start the starting square
+     * @param type the kind of piece
+     * @return the empty and opponent occupied positions the piece reaches
+     * @see PieceType
      */
-    private Set<Position> generatePossibleMovesForKnight(Position startPosition) {
-        int x = startPosition.getX();
-        int y = startPosition.getY();
-
+    private Set<Position> generatePossibleMoves(int start, PieceType type) {
         Set<Position> result = new HashSet<>();
-        // up right
-        result.add(PositionFactory.createPosition(x + 1, y + 2));
-        // up left
-        result.add(PositionFactory.createPosition(x - 1, y + 2));
-        // down right
-        result.add(PositionFactory.createPosition(x + 1, y - 2));
-        // down left
-        result.add(PositionFactory.createPosition(x - 1, y - 2));
-        // left up
-        result.add(PositionFactory.createPosition(x - 2, y + 1));
-        // left down
-        result.add(PositionFactory.createPosition(x - 2, y - 1));
-        // right up
-        result.add(PositionFactory.createPosition(x + 2, y + 1));
-        // right down
-        result.add(PositionFactory.createPosition(x + 2, y - 1));
-
+        for (int offset = 0; offset < type.getOffsetCount(); offset++) {
+            int dx = type.getDx(offset);
+            int dy = type.getDy(offset);
+            for (int end = board.step(start, dx, dy); end >= 0; end = board.step(end, dx, dy)) {
+                Piece attackedPiece = board.get(end);
+                if (attackedPiece == null || attackedPiece.getOwner() != currentPlayer) {
+                    result.add(PositionFactory.getPosition(end));
+                }
+                if (attackedPiece != null || !type.isSliding()) {
+                    break;
+                }
+            }
+        }
         return result;
     }
 
     /**
      * Generate moves for the Pawn Piece
-     * @param startPosition the starting position
+     * @param start the starting square
      * @return a set of moves for the pawn Piece
      * @see Pawn
      */
-    private Set<Position> generatePossibleMovesForPawn(Position startPosition) {
-        int x = startPosition.getX();
-        int y = startPosition.getY();
+    private Set<Position> generatePossibleMovesForPawn(int start) {
+        int forward = currentPlayer == Player.White ? 1 : -1;
+        int startRow = currentPlayer == Player.White ? 1 : 6;
+        Player opponent = currentPlayer == Player.White ? Player.Black : Player.White;
 
         Set<Position> result = new HashSet<>();
-        Position endPosition = null;
-        if (currentPlayer == Player.White) {
-            endPosition = PositionFactory.createPosition(x, y + 1);
-            if (endPosition != null && board.get(endPosition) == null) { // if we don't have piece ahead
-                result.add(endPosition); // normal move
-                if (y == 1) { // if white pawn start position
-                    endPosition = PositionFactory.createPosition(x, y + 2);
-                    if (endPosition != null && board.get(endPosition) == null) { // if we don't have piece ahead
-                        result.add(endPosition); // normal move
-                    }
+        int end = board.step(start, 0, forward);
+        if (end >= 0 && board.get(end) == null) { // if we don't have piece ahead
+            result.add(PositionFactory.getPosition(end)); // normal move
+            if (start >> 3 == startRow) { // if pawn start position
+                end = board.step(start, 0, 2 * forward);
+                if (board.get(end) == null) { // if we don't have piece ahead
+                    result.add(PositionFactory.getPosition(end)); // normal move
                 }
             }
-
-            // if attack opponent
-            endPosition = PositionFactory.createPosition(x + 1, y + 1);
-            if (isPawnAttacks(Player.Black, endPosition)) {
-                result.add(endPosition);
-            }
-            endPosition = PositionFactory.createPosition(x - 1, y + 1);
-            if (isPawnAttacks(Player.Black, endPosition)) {
-                result.add(endPosition);
-            }
         }
-        if (currentPlayer == Player.Black) {
-            endPosition = PositionFactory.createPosition(x, y - 1);
-            if (endPosition != null && board.get(endPosition) == null) { // if we don't have piece ahead
-                result.add(endPosition); // normal move
-                if (y == 6) { // if black pawn start position
-                    endPosition = PositionFactory.createPosition(x, y - 2);
-                    if (endPosition != null && board.get(endPosition) == null) { // if we don't have piece ahead
-                        result.add(endPosition); // normal move
-                    }
-                }
-            }
 
-            // if attack opponent
-            endPosition = PositionFactory.createPosition(x + 1, y - 1);
-            if (isPawnAttacks(Player.White, endPosition)) {
-                result.add(endPosition);
-            }
-            endPosition = PositionFactory.createPosition(x - 1, y - 1);
-            if (isPawnAttacks(Player.White, endPosition)) {
-                result.add(endPosition);
+        // if attack opponent
+        for (int dx = -1; dx <= 1; dx += 2) {
+            end = board.step(start, dx, forward);
+            if (end >= 0 && isPawnAttacks(opponent, end)) {
+                result.add(PositionFactory.getPosition(end));
             }
         }
-
         return result;
     }
 
     /**
      * return true if Pawn can successfully attack, false otherwise  
      * @param attackedPlayer the player under attack
-     * @param endPosition the position of the attacking move
+     * @param end the square of the attacking move
      * @return  true if Pawn can successfully attack, false otherwise  
      */
-    private boolean isPawnAttacks(Player attackedPlayer, Position endPosition) {
-        if (endPosition != null) {
-            Piece attackedPiece = board.get(endPosition);
-            if (attackedPiece != null && attackedPiece.getOwner() == attackedPlayer) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    /**
-     * Generate moves for the King Piece
-     * @param startPosition the starting position
-     * @return a set of moves for the king Piece
-     * @see King
-     */
-    private Set<Position> generatePossibleMovesForKing(Position startPosition) {
-        int x = startPosition.getX();
-        int y = startPosition.getY();
-
-        Set<Position> result = new HashSet<>();
-        // up left
-        result.add(PositionFactory.createPosition(x - 1, y + 1));
-        // up direct
-        result.add(PositionFactory.createPosition(x, y + 1));
-        // up right
-        result.add(PositionFactory.createPosition(x + 1, y + 1));
-        // right
-        result.add(PositionFactory.createPosition(x + 1, y));
-        // down right
-        result.add(PositionFactory.createPosition(x + 1, y - 1));
-        // down direct
-        result.add(PositionFactory.createPosition(x, y - 1));
-        // down left
-        result.add(PositionFactory.createPosition(x - 1, y - 1));
-        // left
-        result.add(PositionFactory.createPosition(x - 1, y));
-
-        return result;
-    }
-
-    /**
-     * Generate moves for the Rook Piece
-     * @param startPosition the starting position
-     * @return a set of moves for the rook Piece
-     * @see Rook
-     */
-    private Set<Position> generatePossibleMovesForRook(Position startPosition) {
-        int x = startPosition.getX();
-        int y = startPosition.getY();
-
-        Set<Position> result = new HashSet<>();
-        // up
-        for (int i = y + 1; i <= Position.MAX_AXIS; i++) {
-            Position endPosition = PositionFactory.createPosition(x, i);
-            if (endPosition == null) {
-                break;
-            }
-            result.add(endPosition);
-            if (board.get(endPosition) != null) {
-                break;
-            }
-        }
-        // down
-        for (int i = y - 1; i >= Position.MIN_AXIS; i--) {
-            Position endPosition = PositionFactory.createPosition(x, i);
-            if (endPosition == null) {
-                break;
-            }
-            result.add(endPosition);
-            if (board.get(endPosition) != null) {
-                break;
-            }
-        }
-        // left
-        for (int i = x - 1; i >= Position.MIN_AXIS; i--) {
-            Position endPosition = PositionFactory.createPosition(i, y);
-            if (endPosition == null) {
-                break;
-            }
-            result.add(endPosition);
-            if (board.get(endPosition) != null) {
-                break;
-            }
-        }
-        // right
-        for (int i = x + 1; i <= Position.MAX_AXIS; i++) {
-            Position endPosition = PositionFactory.createPosition(i, y);
-            if (endPosition == null) {
-                break;
-            }
-            result.add(endPosition);
-            if (board.get(endPosition) != null) {
-                break;
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * Generate moves for the Bishop Piece
-     * @param startPosition the starting position
-     * @return a set of moves for the bishop Piece
-     * @see Bishop
-     */
-    private Set<Position> generatePossibleMovesForBishop(Position startPosition) {
-        int x = startPosition.getX();
-        int y = startPosition.getY();
-
-        Set<Position> result = new HashSet<>();
-        // up left
-        for (int i = x - 1, j = y + 1; i >= Position.MIN_AXIS && j <= Position.MAX_AXIS; i--, j++) {
-            Position endPosition = PositionFactory.createPosition(i, j);
-            if (endPosition == null) {
-                break;
-            }
-            result.add(endPosition);
-            if (board.get(endPosition) != null) {
-                break;
-            }
-        }
-        // up right
-        for (int i = x + 1, j = y + 1; i <= Position.MAX_AXIS && j <= Position.MAX_AXIS; i++, j++) {
-            Position endPosition = PositionFactory.createPosition(i, j);
-            if (endPosition == null) {
-                break;
-            }
-            result.add(endPosition);
-            if (board.get(endPosition) != null) {
-                break;
-            }
-        }
-        // down right
-        for (int i = x + 1, j = y - 1; i <= Position.MAX_AXIS && j >= Position.MIN_AXIS; i++, j--) {
-            Position endPosition = PositionFactory.createPosition(i, j);
-            if (endPosition == null) {
-                break;
-            }
-            result.add(endPosition);
-            if (board.get(endPosition) != null) {
-                break;
-            }
-        }
-        // down left
-        for (int i = x - 1, j = y - 1; i >= Position.MIN_AXIS && j >= Position.MIN_AXIS; i--, j--) {
-            Position endPosition = PositionFactory.createPosition(i, j);
-            if (endPosition == null) {
-                break;
-            }
-            result.add(endPosition);
-            if (board.get(endPosition) != null) {
-                break;
-            }
-        }
-
-        return result;
-    }
-
-    /**
-     * Generate moves for the Queen Piece
-     * @param startPosition the starting position
-     * @return a set of moves for the queen Piece
-     * @see Queen
-     */
-    private Set<Position> generatePossibleMovesForQueen(Position startPosition) {
-        Set<Position> result = generatePossibleMovesForBishop(startPosition);
-        result.addAll(generatePossibleMovesForRook(startPosition));
-
-        return result;
+    private boolean isPawnAttacks(Player attackedPlayer, int end) {
+        Piece attackedPiece = board.get(end);
+        return attackedPiece != null && attackedPiece.getOwner() == attackedPlayer;
     }
 }
@@ -0,0 +1,124 @@
+package chess;
+
+/**
+ * Reads moves in coordinate notation ("e2e4" or "e2-e4") from text without allocating.
+ *
+ * Moves are separated by white space, commas or semicolons. Move numbers such as "12." or "12..."
+ * are skipped, so a list copied from a score sheet reads as is. Each move is returned as an int
+ * packing the start and end squares (y * 8 + x, a1 = 0); a scanner can be reset and reused.
+ */
+public final class MoveScanner {
+
+    /** Returned by {@link #next()} when the text has no more moves */
+    public static final int END = -1;
+
+    private CharSequence text = "";
+    private int offset;
+    private int moveOffset;
+
+    /**
+     * Start reading a text
+     * @param text The text
+     * @param offset The index of the first character to read
+     * @return this scanner
+     */
+    public MoveScanner reset(CharSequence text, int offset) {
+        this.text = text;
+        this.offset = offset;
+        this.moveOffset = offset;
+        return this;
+    }
+
+    /**
+     * Read the next move
+     * @return the packed move, or {@link #END}
+     * @throws IllegalArgumentException if the text at the current offset is not a move
+     * @see #start(int)
+     * @see #end(int)
+     */
+    public int next() {
+        int length = text.length();
+        while (offset < length) {
+            char c = text.charAt(offset);
+            if (isSeparator(c)) {
+                offset++;
+            } else if (c >= '0' && c <= '9') {
+                skipMoveNumber();
+            } else {
+                moveOffset = offset;
+                int start = square();
+                if (offset < length && text.charAt(offset) == '-') {
+                    offset++;
+                }
+                int end = square();
+                if (offset < length && !isSeparator(text.charAt(offset))) {
+                    throw notAMove();
+                }
+                return start << 6 | end;
+            }
+        }
+        return END;
+    }
+
+    /**
+     * @return the index in the text of the move last returned by {@link #next()}
+     */
+    public int getMoveOffset() {
+        return moveOffset;
+    }
+
+    /**
+     * @param move A move returned by {@link #next()}
+     * @return its start square
+     */
+    public static int start(int move) {
+        return move >>> 6;
+    }
+
+    /**
+     * @param move A move returned by {@link #next()}
+     * @return its end square
+     */
+    public static int end(int move) {
+        return move & 63;
+    }
+
+    private int square() {
+        if (offset + 1 >= text.length()) {
+            throw notAMove();
+        }
+        int x = text.charAt(offset) - Position.MIN_COLUMN;
+        int y = text.charAt(offset + 1) - '1';
+        if (x < Position.MIN_AXIS || x > Position.MAX_AXIS || y < Position.MIN_AXIS || y > Position.MAX_AXIS) {
+            throw notAMove();
+        }
+        offset += 2;
+        return y * 8 + x;
+    }
+
+    private void skipMoveNumber() {
+        moveOffset = offset;
+        int length = text.length();
+        while (offset < length && text.charAt(offset) >= '0' && text.charAt(offset) <= '9') {
+            offset++;
+        }
+        if (offset == length || text.charAt(offset) != '.') {
+            throw notAMove();
+        }
+        while (offset < length && text.charAt(offset) == '.') {
+            offset++;
+        }
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == ',' || c == ';';
+    }
+
+    private IllegalArgumentException notAMove() {
+        int end = moveOffset;
+        while (end < text.length() && !isSeparator(text.charAt(end))) {
+            end++;
+        }
+        return new IllegalArgumentException("Not a move at " + moveOffset + ": " + text.subSequence(moveOffset, end));
+    }
+}
@@ -5,6 +5,24 @@ package chess;
  */
 public final class PositionFactory {
 
+    /** Every position of the board, indexed by y * 8 + x */
+    private static final Position[] POSITIONS = new Position[64];
+
+    static {
+        for (int square = 0; square < POSITIONS.length; square++) {
+            POSITIONS[square] = new Position((char) (Position.MIN_COLUMN + (square & 7)), (square >> 3) + Position.MIN_ROW);
+        }
+    }
+
+    /**
+     * Fetch the shared position of a square
+     * @param square The square index, y * 8 + x; a1 = 0, h8 = 63
+     * @return the position
+     */
+    public static Position getPosition(int square) {
+        return POSITIONS[square];
+    }
+
     // TODO not tested
     public static Position createPosition(int x, int y) {
         if (x < Position.MIN_AXIS || x > Position.MAX_AXIS || y < Position.MIN_AXIS || y > Position.MAX_AXIS) {
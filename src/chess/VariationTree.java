@@ -0,0 +1,193 @@
+package chess;
+
+import chess.codec.PositionCodec;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The tree of every line played in a game, for undo, redo and branching analysis.
+ *
+ * Every node keeps its position as a {@link PositionCodec} record of 24 bytes, so any node,
+ * however deep, is restored in constant time by decoding it, and a move costs about a hundred
+ * bytes instead of a copy of the board.
+ */
+public class VariationTree {
+
+    /** A position in the tree and the move that led to it */
+    public static final class Node {
+        private final int id;
+        private final Node parent;
+        private final byte start;
+        private final byte end;
+        /** The position, encoded by {@link PositionCodec} */
+        private final byte[] position;
+        private final long hash;
+        private List<Node> children = Collections.emptyList();
+        /** The child visited last, followed by redo */
+        private Node lastVisited;
+
+        private Node(int id, Node parent, int start, int end, byte[] position, long hash) {
+            this.id = id;
+            this.parent = parent;
+            this.start = (byte) start;
+            this.end = (byte) end;
+            this.position = position;
+            this.hash = hash;
+        }
+
+        /**
+         * @return the number of the node, for {@link VariationTree#goTo(int)}; the root is 0
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * @return the previous position, or null for the root
+         */
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * @return the positions played from this one, in the order they were first played
+         */
+        public List<Node> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        /**
+         * @return the starting position of the move that led here, or null for the root
+         */
+        public Position getStart() {
+            return parent == null ? null : PositionFactory.getPosition(start);
+        }
+
+        /**
+         * @return the ending position of the move that led here, or null for the root
+         */
+        public Position getEnd() {
+            return parent == null ? null : PositionFactory.getPosition(end);
+        }
+
+        /**
+         * @return the Zobrist hash of the position
+         */
+        public long getPositionHash() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return parent == null ? "#" + id + " start" : "#" + id + " " + getStart() + " " + getEnd();
+        }
+    }
+
+    /** Every node, indexed by id */
+    private final List<Node> nodes = new ArrayList<>();
+
+    /** The node of the position on the board */
+    private Node current;
+
+    /**
+     * Start a tree at a position
+     * @param state The position of the root
+     */
+    public VariationTree(GameState state) {
+        current = new Node(0, null, 0, 0, PositionCodec.encode(state), state.getPositionHash());
+        nodes.add(current);
+    }
+
+    /**
+     * @return the node of the position on the board
+     */
+    public Node getCurrent() {
+        return current;
+    }
+
+    /**
+     * @return the number of nodes, the root included
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Record a move played from the current node and make its position the current one.
+     * A move that was played here before leads back to its existing node.
+     * @param start The starting position of the move
+     * @param end The ending position of the move
+     * @param after The game after the move
+     * @return the node of the new position
+     */
+    public Node play(Position start, Position end, GameState after) {
+        int from = start.getY() * 8 + start.getX();
+        int to = end.getY() * 8 + end.getX();
+        for (Node child : current.children) {
+            if (child.start == from && child.end == to) {
+                return visit(child);
+            }
+        }
+        Node child = new Node(nodes.size(), current, from, to, PositionCodec.encode(after), after.getPositionHash());
+        nodes.add(child);
+        if (current.children.isEmpty()) {
+            current.children = new ArrayList<>(1);
+        }
+        current.children.add(child);
+        return visit(child);
+    }
+
+    /**
+     * Step back one move
+     * @return the previous node, or null if the current node is the root
+     */
+    public Node undo() {
+        if (current.parent == null) {
+            return null;
+        }
+        current.parent.lastVisited = current;
+        current = current.parent;
+        return current;
+    }
+
+    /**
+     * Step forward along the line visited last
+     * @return the next node, or null if no move was played from the current node
+     */
+    public Node redo() {
+        return current.lastVisited == null ? null : visit(current.lastVisited);
+    }
+
+    /**
+     * Jump to any node
+     * @param id The number of the node
+     * @return the node
+     * @throws IllegalArgumentException if there is no such node
+     */
+    public Node goTo(int id) {
+        if (id < 0 || id >= nodes.size()) {
+            throw new IllegalArgumentException("No position #" + id);
+        }
+        return visit(nodes.get(id));
+    }
+
+    private Node visit(Node node) {
+        if (node.parent != null) {
+            node.parent.lastVisited = node;
+        }
+        current = node;
+        return node;
+    }
+
+    /**
+     * Set up a game in the position of the current node
+     * @param state The game to set up
+     */
+    public void restore(GameState state) {
+        PositionCodec.decode(ByteBuffer.wrap(current.position), 0, state);
+        state.publish();
+    }
+}
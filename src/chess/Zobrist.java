@@ -0,0 +1,51 @@
+package chess;
+
+import chess.pieces.Piece;
+import chess.pieces.PieceType;
+
+import java.util.Random;
+
+/**
+ * Zobrist keys for hashing positions into 64 bits.
+ * The keys come from a fixed seed, so hashes are stable across runs and can be stored on disk.
+ */
+public final class Zobrist {
+
+    /** One key per piece code and square */
+    private static final long[][] PIECE_KEYS = new long[2 * PieceType.COUNT][64];
+
+    /** Mixed in when black is to move */
+    private static final long BLACK_TO_MOVE;
+
+    static {
+        Random random = new Random(0x5EED_C4E55L);
+        for (long[] keys : PIECE_KEYS) {
+            for (int square = 0; square < keys.length; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     * Key of a piece standing on a position
+     * @param piece The piece
+     * @param position The position of the piece
+     * @return the key
+     */
+    public static long key(Piece piece, Position position) {
+        return PIECE_KEYS[piece.getCode()][position.getY() * 8 + position.getX()];
+    }
+
+    /**
+     * Key of the side to move
+     * @param player The player to move
+     * @return the key
+     */
+    public static long key(Player player) {
+        return player == Player.Black ? BLACK_TO_MOVE : 0L;
+    }
+}
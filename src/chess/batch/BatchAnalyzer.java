@@ -0,0 +1,337 @@
+package chess.batch;
+
+import chess.Fen;
+import chess.GameState;
+import chess.Position;
+import chess.codec.PositionFile;
+import chess.engine.Evaluator;
+import chess.engine.MaterialEvaluator;
+import chess.engine.PawnHashTable;
+import chess.engine.PawnStructureEvaluator;
+import chess.engine.Search;
+import chess.nnue.NnueEvaluator;
+import chess.nnue.NnueNetwork;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Headless analysis of a file of positions.
+ *
+ * Positions flow through four stages connected by bounded queues: a reader, parsers, analysers
+ * (one per core by default) and a writer. At most {@link Options#queueCapacity} positions are in
+ * flight at once, so a slow writer or slow analysis holds the reader back instead of filling memory.
+ *
+ * The input is either text with one FEN per line (blank lines and lines starting with '#' are
+ * skipped) or a {@link PositionFile} ending in ".cpf". The output has one tab separated line per
+ * position: id, legal move count, check, mate, stalemate and, with a search depth, best move and score.
+ * The id is the line number of a text input or the record index of a position file.
+ */
+public class BatchAnalyzer {
+
+    /** Settings of a batch run */
+    public static final class Options {
+        /** Search depth for the best move; 0 to skip the search */
+        public int depth = 0;
+        /** Number of analysis threads */
+        public int threads = Runtime.getRuntime().availableProcessors();
+        /** Number of parser threads */
+        public int parsers = 1;
+        /** Maximum number of positions in flight */
+        public int queueCapacity = 1024;
+        /** Write results in input order; otherwise as soon as they are ready */
+        public boolean ordered = true;
+        /** Evaluation at the leaves of the search; shared by the analysis threads */
+        public Evaluator evaluator = new MaterialEvaluator();
+    }
+
+    /** A position on its way through the pipeline */
+    private static final class Item {
+        /** Marks the end of the input in a queue */
+        static final Item END = new Item(-1, -1, null);
+
+        final long sequence;
+        final long id;
+        final String text;
+        GameState state;
+        String result;
+
+        Item(long sequence, long id, String text) {
+            this.sequence = sequence;
+            this.id = id;
+            this.text = text;
+        }
+    }
+
+    private final Options options;
+
+    public BatchAnalyzer(Options options) {
+        this.options = options;
+    }
+
+    /**
+     * Analyse every position of a file
+     * @param input The positions, FEN text or a position file
+     * @param output The file to write the results to
+     * @return the number of positions analysed
+     * @throws IOException if the input can not be read or the output can not be written
+     * @throws InterruptedException if interrupted while waiting for the pipeline
+     * @throws IllegalArgumentException if the options leave a stage without threads or the queues without room
+     */
+    public long run(Path input, Path output) throws IOException, InterruptedException {
+        if (options.threads < 1) {
+            throw new IllegalArgumentException("A batch needs at least one analysis thread");
+        }
+        if (options.parsers < 1) {
+            throw new IllegalArgumentException("A batch needs at least one parser thread");
+        }
+        if (options.queueCapacity < 1) {
+            throw new IllegalArgumentException("The queue needs room for at least one position");
+        }
+        try (PositionFile positions = input.toString().endsWith(".cpf") ? PositionFile.open(input) : null) {
+            return run(input, positions, output);
+        }
+    }
+
+    /**
+     * Run the pipeline; the stages have stopped when this returns
+     * @param positions The mapped input, or null to read FEN text
+     */
+    private long run(Path input, PositionFile positions, Path output) throws IOException, InterruptedException {
+        BlockingQueue<Item> toParse = new ArrayBlockingQueue<>(options.queueCapacity);
+        BlockingQueue<Item> toAnalyse = new ArrayBlockingQueue<>(options.queueCapacity);
+        BlockingQueue<Item> toWrite = new ArrayBlockingQueue<>(options.queueCapacity);
+        Semaphore inFlight = new Semaphore(options.queueCapacity);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        AtomicInteger parsersLeft = new AtomicInteger(options.parsers);
+        AtomicInteger analysersLeft = new AtomicInteger(options.threads);
+
+        ExecutorService stages = Executors.newFixedThreadPool(1 + options.parsers + options.threads);
+        try {
+            stages.execute(() -> {
+                try {
+                    read(input, positions, toParse, inFlight);
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    endOfInput(toParse, options.parsers);
+                }
+            });
+            for (int i = 0; i < options.parsers; i++) {
+                stages.execute(() -> {
+                    try {
+                        parse(positions, toParse, toAnalyse);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        if (parsersLeft.decrementAndGet() == 0) {
+                            endOfInput(toAnalyse, options.threads);
+                        }
+                    }
+                });
+            }
+            for (int i = 0; i < options.threads; i++) {
+                stages.execute(() -> {
+                    try {
+                        analyse(toAnalyse, toWrite);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        if (analysersLeft.decrementAndGet() == 0) {
+                            endOfInput(toWrite, 1);
+                        }
+                    }
+                });
+            }
+            long written;
+            try (Writer out = Files.newBufferedWriter(output)) {
+                written = write(toWrite, out, inFlight);
+            }
+            if (failure.get() != null) {
+                throw new IOException("Failed to read " + input, failure.get());
+            }
+            return written;
+        } finally {
+            stages.shutdownNow();
+            stages.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    private static void endOfInput(BlockingQueue<Item> queue, int consumers) {
+        for (int i = 0; i < consumers; i++) {
+            try {
+                queue.put(Item.END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stage 1: read raw positions, waiting for a free slot before each one
+     */
+    private static void read(Path input, PositionFile positions, BlockingQueue<Item> out, Semaphore inFlight)
+            throws IOException, InterruptedException {
+        long sequence = 0;
+        if (positions != null) {
+            for (long index = 0; index < positions.size(); index++) {
+                inFlight.acquire();
+                out.put(new Item(sequence++, index, null));
+            }
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(input)) {
+            String line;
+            long lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                inFlight.acquire();
+                out.put(new Item(sequence++, lineNumber, line));
+            }
+        }
+    }
+
+    /**
+     * Stage 2: turn raw positions into games
+     */
+    private static void parse(PositionFile positions, BlockingQueue<Item> in, BlockingQueue<Item> out) throws InterruptedException {
+        for (Item item = in.take(); item != Item.END; item = in.take()) {
+            try {
+                item.state = positions != null ? positions.get(item.id) : Fen.parse(item.text);
+            } catch (RuntimeException e) {
+                item.result = item.id + "\terror\t" + e.getMessage();
+            }
+            out.put(item);
+        }
+    }
+
+    /**
+     * Stage 3: analyse the games
+     */
+    private void analyse(BlockingQueue<Item> in, BlockingQueue<Item> out) throws InterruptedException {
+        Search search = new Search(options.evaluator);
+        for (Item item = in.take(); item != Item.END; item = in.take()) {
+            if (item.result == null) {
+                try {
+                    item.result = analyse(item.id, item.state, search);
+                } catch (RuntimeException e) {
+                    item.result = item.id + "\terror\t" + e;
+                }
+            }
+            item.state = null;
+            out.put(item);
+        }
+    }
+
+    private String analyse(long id, GameState state, Search search) {
+        int moves = 0;
+        for (Set<Position> ends : state.getLegalMoves().values()) {
+            moves += ends.size();
+        }
+        boolean check = state.isCheck();
+        StringBuilder line = new StringBuilder();
+        line.append(id)
+                .append('\t').append(moves)
+                .append('\t').append(check)
+                .append('\t').append(check && moves == 0)
+                .append('\t').append(!check && moves == 0);
+        if (options.depth > 0 && moves > 0) {
+            Search.Result result = search.search(state, options.depth);
+            line.append('\t').append(result.getBestMove()).append('\t').append(result.getScore());
+        }
+        return line.toString();
+    }
+
+    /**
+     * Stage 4: write the results, in input order unless unordered output was asked for
+     * @return the number of results written
+     */
+    private long write(BlockingQueue<Item> in, Writer out, Semaphore inFlight) throws IOException, InterruptedException {
+        out.write(options.depth > 0 ? "#id\tmoves\tcheck\tmate\tstalemate\tbest\tscore\n" : "#id\tmoves\tcheck\tmate\tstalemate\n");
+        Map<Long, Item> waiting = new HashMap<>();
+        long next = 0;
+        for (Item item = in.take(); item != Item.END; item = in.take()) {
+            if (!options.ordered) {
+                writeLine(out, item, inFlight);
+                next++;
+                continue;
+            }
+            waiting.put(item.sequence, item);
+            for (Item ready = waiting.remove(next); ready != null; ready = waiting.remove(next)) {
+                writeLine(out, ready, inFlight);
+                next++;
+            }
+        }
+        return next;
+    }
+
+    private static void writeLine(Writer out, Item item, Semaphore inFlight) throws IOException {
+        out.write(item.result);
+        out.write('\n');
+        inFlight.release();
+    }
+
+    /**
+     * Command line entry point
+     * @param args [-depth n] [-threads n] [-queue n] [-unordered] [-network file | -pawns] &lt;input&gt; &lt;output&gt;
+     * @throws Exception if the batch fails
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-"); i++) {
+            switch (args[i]) {
+                case "-depth":
+                    options.depth = Integer.parseInt(args[++i]);
+                    break;
+                case "-threads":
+                    options.threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-queue":
+                    options.queueCapacity = Integer.parseInt(args[++i]);
+                    break;
+                case "-unordered":
+                    options.ordered = false;
+                    break;
+                case "-network":
+                    options.evaluator = new NnueEvaluator(NnueNetwork.load(Paths.get(args[++i])));
+                    break;
+                case "-pawns":
+                    options.evaluator = new PawnStructureEvaluator(new PawnHashTable(1 << 16));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (args.length - i != 2) {
+            System.out.println("Usage: [-depth n] [-threads n] [-queue n] [-unordered] [-network file | -pawns] <input> <output>");
+            return;
+        }
+        long start = System.nanoTime();
+        long count = new BatchAnalyzer(options).run(Paths.get(args[i]), Paths.get(args[i + 1]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Analysed %d positions in %.1f s (%.0f positions/s)%n", count, seconds, count / seconds);
+        if (options.evaluator instanceof PawnStructureEvaluator) {
+            System.out.println("Pawn hash: " + ((PawnStructureEvaluator) options.evaluator).getPawnHashTable());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package chess.board;
+
+import chess.Position;
+import chess.pieces.Piece;
+
+import java.util.Map;
+
+/**
+ * Storage of the pieces under a {@link chess.GameState}.
+ *
+ * Squares are numbered y * 8 + x, a1 = 0 and h8 = 63, whatever the backend stores internally.
+ * Implementations differ in how they keep the pieces and how they find the neighbours of a square;
+ * {@link BoardType} lists them.
+ */
+public interface BoardRepresentation {
+
+    /**
+     * @param square The square
+     * @return the piece on the square, or null
+     */
+    Piece get(int square);
+
+    /**
+     * Put a piece on a square, or empty it
+     * @param square The square
+     * @param piece The piece, or null to empty the square
+     * @return the piece that was there before, or null
+     */
+    Piece put(int square, Piece piece);
+
+    /**
+     * Find the square a step away
+     * @param square The starting square
+     * @param dx The number of columns to step, -2 to 2
+     * @param dy The number of rows to step, -2 to 2
+     * @return the square reached, or -1 if the step leaves the board
+     */
+    int step(int square, int dx, int dy);
+
+    /**
+     * @return a bitmap of the occupied squares, bit n for square n
+     */
+    long occupancy();
+
+    /**
+     * Remove every piece
+     */
+    void clear();
+
+    /**
+     * @return an independent board with the same pieces and the same implementation
+     */
+    BoardRepresentation copy();
+
+    /**
+     * @return a read-only view of the pieces, keyed by position
+     */
+    Map<Position, Piece> asMap();
+}
@@ -0,0 +1,49 @@
+package chess.board;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * The available board representations.
+ */
+public enum BoardType {
+    /** {@link MailboxBoard} */
+    MAILBOX(MailboxBoard::new),
+    /** {@link HashMapBoard}, the reference */
+    HASHMAP(HashMapBoard::new);
+
+    /** The representation of new games, chosen by the "chess.board" property; mailbox unless set to "hashmap" */
+    public static final BoardType DEFAULT = fromProperty(System.getProperty("chess.board"));
+
+    private final Supplier<BoardRepresentation> factory;
+
+    BoardType(Supplier<BoardRepresentation> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Parse the "chess.board" property, warning about and ignoring an unknown name
+     * @param name The value of the property, or null
+     * @return the named representation, or mailbox if the name is missing or unknown
+     */
+    private static BoardType fromProperty(String name) {
+        if (name == null) {
+            return MAILBOX;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown chess.board '" + name + "', expected one of "
+                    + Arrays.toString(values()).toLowerCase(Locale.ROOT) + "; using mailbox");
+            return MAILBOX;
+        }
+    }
+
+    /**
+     * @return a new, empty board
+     */
+    public BoardRepresentation create() {
+        return factory.get();
+    }
+}
@@ -0,0 +1,71 @@
+package chess.board;
+
+import chess.Position;
+import chess.PositionFactory;
+import chess.pieces.Piece;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The original representation: a map from position to piece. Kept as the reference the other
+ * boards are checked against.
+ */
+public class HashMapBoard implements BoardRepresentation {
+
+    private final Map<Position, Piece> pieces;
+    private long occupancy;
+
+    public HashMapBoard() {
+        pieces = new HashMap<>();
+    }
+
+    private HashMapBoard(HashMapBoard other) {
+        pieces = new HashMap<>(other.pieces);
+        occupancy = other.occupancy;
+    }
+
+    @Override
+    public Piece get(int square) {
+        return pieces.get(PositionFactory.getPosition(square));
+    }
+
+    @Override
+    public Piece put(int square, Piece piece) {
+        if (piece == null) {
+            occupancy &= ~(1L << square);
+            return pieces.remove(PositionFactory.getPosition(square));
+        }
+        occupancy |= 1L << square;
+        return pieces.put(PositionFactory.getPosition(square), piece);
+    }
+
+    @Override
+    public int step(int square, int dx, int dy) {
+        int x = (square & 7) + dx;
+        int y = (square >> 3) + dy;
+        return x < Position.MIN_AXIS || x > Position.MAX_AXIS || y < Position.MIN_AXIS || y > Position.MAX_AXIS ? -1 : y * 8 + x;
+    }
+
+    @Override
+    public long occupancy() {
+        return occupancy;
+    }
+
+    @Override
+    public void clear() {
+        pieces.clear();
+        occupancy = 0;
+    }
+
+    @Override
+    public BoardRepresentation copy() {
+        return new HashMapBoard(this);
+    }
+
+    @Override
+    public Map<Position, Piece> asMap() {
+        return Collections.unmodifiableMap(pieces);
+    }
+}
@@ -0,0 +1,153 @@
+package chess.board;
+
+import chess.Position;
+import chess.PositionFactory;
+import chess.pieces.Piece;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A 0x88 mailbox: 128 slots, 16 per rank, of which the left 8 are the board.
+ *
+ * Slot y * 16 + x holds the piece of column x and row y. Any step that leaves the board, in any
+ * direction, lands on a slot with bit 0x08 (past the h file) or 0x80 (past rank 8 or below rank 1)
+ * set, so the off board test is a single mask.
+ */
+public class MailboxBoard implements BoardRepresentation {
+
+    private final Piece[] slots;
+    private long occupancy;
+    private Map<Position, Piece> view;
+
+    public MailboxBoard() {
+        slots = new Piece[128];
+    }
+
+    private MailboxBoard(MailboxBoard other) {
+        slots = other.slots.clone();
+        occupancy = other.occupancy;
+    }
+
+    private static int slot(int square) {
+        return square + (square & ~7);
+    }
+
+    @Override
+    public Piece get(int square) {
+        return slots[slot(square)];
+    }
+
+    @Override
+    public Piece put(int square, Piece piece) {
+        int slot = slot(square);
+        Piece previous = slots[slot];
+        slots[slot] = piece;
+        if (piece == null) {
+            occupancy &= ~(1L << square);
+        } else {
+            occupancy |= 1L << square;
+        }
+        return previous;
+    }
+
+    @Override
+    public int step(int square, int dx, int dy) {
+        int target = slot(square) + dy * 16 + dx;
+        if ((target & 0x88) != 0) {
+            return -1;
+        }
+        return (target >> 4) * 8 + (target & 7);
+    }
+
+    @Override
+    public long occupancy() {
+        return occupancy;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(slots, null);
+        occupancy = 0;
+    }
+
+    @Override
+    public BoardRepresentation copy() {
+        return new MailboxBoard(this);
+    }
+
+    @Override
+    public Map<Position, Piece> asMap() {
+        if (view == null) {
+            view = new View();
+        }
+        return view;
+    }
+
+    /** Read-only map view over the occupied squares */
+    private final class View extends AbstractMap<Position, Piece> {
+
+        @Override
+        public Piece get(Object key) {
+            int square = square(key);
+            return square < 0 ? null : MailboxBoard.this.get(square);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return Long.bitCount(occupancy);
+        }
+
+        @Override
+        public Set<Entry<Position, Piece>> entrySet() {
+            return new AbstractSet<Entry<Position, Piece>>() {
+                @Override
+                public Iterator<Entry<Position, Piece>> iterator() {
+                    return new Iterator<Entry<Position, Piece>>() {
+                        private long remaining = occupancy;
+
+                        @Override
+                        public boolean hasNext() {
+                            return remaining != 0;
+                        }
+
+                        @Override
+                        public Entry<Position, Piece> next() {
+                            if (remaining == 0) {
+                                throw new NoSuchElementException();
+                            }
+                            int square = Long.numberOfTrailingZeros(remaining);
+                            remaining &= remaining - 1;
+                            return new SimpleImmutableEntry<>(PositionFactory.getPosition(square), MailboxBoard.this.get(square));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return Long.bitCount(occupancy);
+                }
+            };
+        }
+
+        private int square(Object key) {
+            if (!(key instanceof Position)) {
+                return -1;
+            }
+            Position position = (Position) key;
+            int x = position.getX();
+            int y = position.getY();
+            return x < Position.MIN_AXIS || x > Position.MAX_AXIS || y < Position.MIN_AXIS || y > Position.MAX_AXIS ? -1 : y * 8 + x;
+        }
+    }
+}
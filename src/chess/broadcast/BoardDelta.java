@@ -0,0 +1,117 @@
+package chess.broadcast;
+
+import chess.GameSnapshot;
+import chess.GameState;
+import chess.Player;
+import chess.Position;
+import chess.PositionFactory;
+import chess.codec.PositionCodec;
+import chess.pieces.Piece;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The messages sent to spectators.
+ *
+ * A delta lists only the squares that changed since the previous message: type, sequence number,
+ * player to move, square count and a (square, piece code) pair per square, 15 bytes for a move.
+ * A snapshot carries the whole position as a {@link PositionCodec} record and is sent to spectators
+ * that join late or fall behind. The sequence number of a snapshot is that of the last delta it
+ * includes.
+ */
+public final class BoardDelta {
+
+    /** Type of a delta message */
+    public static final byte DELTA = 1;
+
+    /** Type of a snapshot message */
+    public static final byte SNAPSHOT = 2;
+
+    /** Piece code of an empty square */
+    private static final int EMPTY = 15;
+
+    /** Type, sequence number */
+    private static final int HEADER_SIZE = 1 + Long.BYTES;
+
+    /** Largest message: a delta of every square */
+    public static final int MAX_SIZE = HEADER_SIZE + 2 + 64 * 2;
+
+    private BoardDelta() {
+    }
+
+    /**
+     * Encode the changes between two positions
+     * @param sequence The sequence number of the message
+     * @param before The previous position, or null to list every occupied square
+     * @param after The new position
+     * @return the message
+     */
+    public static byte[] delta(long sequence, GameSnapshot before, GameSnapshot after) {
+        ByteBuffer out = ByteBuffer.allocate(MAX_SIZE);
+        out.put(DELTA).putLong(sequence).put((byte) after.getCurrentPlayer().ordinal()).put((byte) 0);
+        int count = 0;
+        for (int square = 0; square < 64; square++) {
+            Position position = PositionFactory.getPosition(square);
+            Piece old = before == null ? null : before.getPieces().get(position);
+            Piece piece = after.getPieces().get(position);
+            if (old != piece && (old == null || piece == null || old.getCode() != piece.getCode())) {
+                out.put((byte) square).put((byte) (piece == null ? EMPTY : piece.getCode()));
+                count++;
+            }
+        }
+        out.put(HEADER_SIZE + 1, (byte) count);
+        byte[] message = new byte[out.position()];
+        out.flip();
+        out.get(message);
+        return message;
+    }
+
+    /**
+     * Encode a whole position
+     * @param sequence The sequence number of the last delta included
+     * @param position The position
+     * @return the message
+     */
+    public static byte[] snapshot(long sequence, GameSnapshot position) {
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + PositionCodec.RECORD_SIZE);
+        out.put(SNAPSHOT).putLong(sequence);
+        PositionCodec.encode(position.toGameState(), out);
+        return out.array();
+    }
+
+    /**
+     * @param message A message
+     * @return its sequence number
+     */
+    public static long sequence(byte[] message) {
+        return ByteBuffer.wrap(message).getLong(1);
+    }
+
+    /**
+     * Apply a message to a spectator's copy of the game
+     * @param message The message
+     * @param state The copy of the game
+     * @throws IllegalArgumentException if the message is not a delta or snapshot
+     */
+    public static void apply(byte[] message, GameState state) {
+        ByteBuffer in = ByteBuffer.wrap(message);
+        switch (in.get(0)) {
+            case SNAPSHOT:
+                PositionCodec.decode(in, HEADER_SIZE, state);
+                break;
+            case DELTA:
+                in.position(HEADER_SIZE);
+                Player player = Player.values()[in.get()];
+                int count = in.get() & 0xFF;
+                for (int i = 0; i < count; i++) {
+                    Position position = PositionFactory.getPosition(in.get());
+                    int code = in.get();
+                    state.placePiece(position, code == EMPTY ? null : PositionCodec.pieceOf(code));
+                }
+                state.setCurrentPlayer(player);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown message type " + in.get(0));
+        }
+    }
+}
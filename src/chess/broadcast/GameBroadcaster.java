@@ -0,0 +1,161 @@
+package chess.broadcast;
+
+import chess.GameSnapshot;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fans the positions of one game out to any number of spectators.
+ *
+ * Every published position is encoded once, as a {@link BoardDelta} against the previous one, into
+ * a ring of recent messages. Spectators do not register with the publisher: each {@link Subscription}
+ * reads the ring at its own pace, so publishing costs the same for one spectator or thousands.
+ * A spectator that joins late, or falls more than the ring's capacity behind, gets a single snapshot
+ * of the current position instead of the deltas it missed.
+ *
+ * One thread publishes; any number of threads may read.
+ */
+public class GameBroadcaster {
+
+    /** The latest position and its encoding, made on first demand */
+    private static final class Latest {
+        final long sequence;
+        final GameSnapshot position;
+        private volatile byte[] message;
+
+        Latest(long sequence, GameSnapshot position) {
+            this.sequence = sequence;
+            this.position = position;
+        }
+
+        byte[] message() {
+            byte[] result = message;
+            if (result == null) {
+                message = result = BoardDelta.snapshot(sequence, position);
+            }
+            return result;
+        }
+    }
+
+    /** Recent messages; the message with sequence n is in slot n % capacity */
+    private final AtomicReferenceArray<byte[]> ring;
+
+    /** Sequence number of the next message */
+    private volatile long head = 0;
+
+    /** The latest position, null until the first one is published */
+    private volatile Latest latest;
+
+    /**
+     * Create a broadcaster
+     * @param capacity How many messages a spectator may fall behind before it is sent a snapshot instead
+     */
+    public GameBroadcaster(int capacity) {
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Publish a position; called from the thread that owns the game
+     * @param position The new position
+     */
+    public void publish(GameSnapshot position) {
+        long sequence = head;
+        Latest previous = latest;
+        ring.set((int) (sequence % ring.length()), BoardDelta.delta(sequence, previous == null ? null : previous.position, position));
+        latest = new Latest(sequence, position);
+        head = sequence + 1;
+        synchronized (this) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return the sequence number of the next message
+     */
+    public long getSequence() {
+        return head;
+    }
+
+    /**
+     * Wait until a message after a given sequence number is published
+     * @param sequence The sequence number already seen
+     * @param timeoutMillis The longest time to wait
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public synchronized void awaitAfter(long sequence, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (long left = timeoutMillis; head <= sequence + 1 && left > 0; left = deadline - System.currentTimeMillis()) {
+            wait(left);
+        }
+    }
+
+    /**
+     * Start following the game. The first message is a snapshot of the current position.
+     * @return the subscription, to be read by one thread
+     */
+    public Subscription subscribe() {
+        return new Subscription();
+    }
+
+    /**
+     * One spectator's position in the stream of messages
+     */
+    public final class Subscription {
+
+        /** Sequence number of the next message to read; -1 until bootstrapped */
+        private long cursor = -1;
+
+        /** Number of snapshots sent, the first one included */
+        private long snapshots;
+
+        private Subscription() {
+        }
+
+        /**
+         * Take the next message
+         * @return the next delta, a snapshot if the spectator is new or fell behind, or null if it is up to date
+         */
+        public byte[] next() {
+            long end = head;
+            if (cursor >= 0 && cursor < end && end - cursor <= ring.length()) {
+                byte[] message = ring.get((int) (cursor % ring.length()));
+                if (BoardDelta.sequence(message) == cursor) {
+                    cursor++;
+                    return message;
+                }
+                // overwritten while we read it: we are too far behind
+            }
+            if (cursor >= 0 && cursor >= end) {
+                return null;
+            }
+            Latest current = latest;
+            if (current == null) {
+                return null;
+            }
+            cursor = current.sequence + 1;
+            snapshots++;
+            return current.message();
+        }
+
+        /**
+         * @return the sequence number of the last message taken, or -1
+         */
+        public long getSequence() {
+            return cursor - 1;
+        }
+
+        /**
+         * @return how many messages were published that this spectator has not taken yet
+         */
+        public long getLag() {
+            return cursor < 0 ? head : head - cursor;
+        }
+
+        /**
+         * @return the number of snapshots taken: one to join, plus one every time the spectator fell behind
+         */
+        public long getSnapshots() {
+            return snapshots;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package chess.broadcast;
+
+import chess.BoardRenderer;
+import chess.GameState;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * Watches a game streamed by a {@link SpectatorServer}, printing the board after every update.
+ */
+public final class SpectatorClient {
+
+    private SpectatorClient() {
+    }
+
+    /**
+     * Follow a game until the server closes the connection
+     * @param host The server host
+     * @param port The server port
+     * @param compact Whether to print the board on a single line
+     * @throws IOException if the connection fails
+     */
+    public static void watch(String host, int port, boolean compact) throws IOException {
+        BoardRenderer renderer = new BoardRenderer(System.lineSeparator(), compact);
+        GameState state = new GameState();
+        try (Socket socket = new Socket(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    return;
+                }
+                byte[] received = new byte[length];
+                in.readFully(received);
+                BoardDelta.apply(received, state);
+                System.out.print(renderer.render(state));
+                System.out.println("#" + BoardDelta.sequence(received) + " " + state.getCurrentPlayer() + "'s Move");
+            }
+        }
+    }
+
+    /**
+     * Main driver
+     * @param args host, port and optionally "-compact"
+     * @throws IOException if the connection fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: SpectatorClient <host> <port> [-compact]");
+            return;
+        }
+        watch(args[0], Integer.parseInt(args[1]), args.length > 2 && args[2].equals("-compact"));
+    }
+}
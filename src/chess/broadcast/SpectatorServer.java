@@ -0,0 +1,190 @@
+package chess.broadcast;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Streams a {@link GameBroadcaster} to spectators over TCP.
+ *
+ * One thread serves every connection with non-blocking sockets. Messages are batched: every
+ * {@link #BATCH_MILLIS} ms, or sooner when a move is published, each connection gets everything
+ * it has not seen yet in a single write. A spectator whose socket does not keep up is simply not
+ * read for; once it falls behind the broadcaster's ring it receives one snapshot instead of the
+ * backlog. Each message is sent as one length byte followed by the message.
+ */
+public class SpectatorServer implements AutoCloseable {
+
+    /** Longest time between two rounds of writes */
+    private static final long BATCH_MILLIS = 20;
+
+    /** Size of the send buffer of a connection */
+    private static final int BUFFER_SIZE = 8192;
+
+    private final GameBroadcaster broadcaster;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean closed;
+
+    /**
+     * Start serving
+     * @param broadcaster The game to stream
+     * @param port The port to listen on, or 0 for any free port
+     * @throws IOException if the port can not be opened
+     */
+    public SpectatorServer(GameBroadcaster broadcaster, int port) throws IOException {
+        this.broadcaster = broadcaster;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        thread = new Thread(this::serve, "spectators");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * @return the number of connected spectators
+     */
+    public int getSpectatorCount() {
+        return selector.keys().size() - 1;
+    }
+
+    private void serve() {
+        long seen = -1;
+        try {
+            while (!closed) {
+                broadcaster.awaitAfter(seen, BATCH_MILLIS);
+                seen = broadcaster.getSequence() - 1;
+                selector.selectNow();
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                    } else if (key.isValid() && key.isReadable()) {
+                        discardInput(key);
+                    }
+                }
+                for (SelectionKey key : selector.keys()) {
+                    if (key.isValid() && key.attachment() != null) {
+                        send(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("Spectator server stopped: " + e.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The state of one spectator */
+    private static final class Connection {
+        final GameBroadcaster.Subscription subscription;
+        final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+
+        Connection(GameBroadcaster.Subscription subscription) {
+            this.subscription = subscription;
+            out.flip();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(broadcaster.subscribe()));
+    }
+
+    /**
+     * Spectators send nothing; reading only detects closed connections
+     */
+    private void discardInput(SelectionKey key) {
+        ByteBuffer ignored = ByteBuffer.allocate(64);
+        try {
+            if (((SocketChannel) key.channel()).read(ignored) < 0) {
+                close(key);
+            }
+        } catch (IOException e) {
+            close(key);
+        }
+    }
+
+    /**
+     * Write what the spectator has not seen yet, as much as its socket takes
+     */
+    private void send(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (!connection.out.hasRemaining()) {
+                connection.out.clear();
+                byte[] message;
+                while (connection.out.remaining() > BoardDelta.MAX_SIZE && (message = connection.subscription.next()) != null) {
+                    connection.out.put((byte) message.length).put(message);
+                }
+                connection.out.flip();
+            }
+            if (connection.out.hasRemaining()) {
+                ((SocketChannel) key.channel()).write(connection.out);
+            }
+        } catch (IOException e) {
+            close(key);
+        }
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+    }
+
+    /**
+     * Stop the serving thread, then disconnect every spectator. The selector and its keys are
+     * only touched once the thread is gone.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        thread.interrupt();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        for (SelectionKey key : selector.keys()) {
+            close(key);
+        }
+        selector.close();
+        server.close();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package chess.cache;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A bounded cache of {@link PositionAnalysis} by 64-bit position hash, shared by any number of games and threads.
+ *
+ * The cache is split into stripes by hash, each a least recently used list behind its own lock,
+ * so threads looking up different positions rarely wait for each other. Eviction is size aware:
+ * a position weighs one plus its number of legal moves, and each stripe evicts its least recently
+ * used positions until it is back under its share of the maximum weight.
+ *
+ * Positions are identified by their Zobrist hash alone; a collision of two positions is possible
+ * but, with 64 bits, far rarer than anything else that can go wrong.
+ */
+public class AnalysisCache implements AnalysisCacheMXBean {
+
+    /** Number of stripes; a power of two */
+    private static final int STRIPES = 64;
+
+    /** One lock and one LRU list */
+    private static final class Stripe {
+        final Map<Long, PositionAnalysis> entries = new LinkedHashMap<>(16, 0.75f, true);
+        long weight;
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long maxWeight;
+    private final long maxStripeWeight;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create a cache
+     * @param maxWeight The most weight to keep, in legal moves summed over the positions;
+     *                  about 100 bytes each
+     */
+    public AnalysisCache(long maxWeight) {
+        if (maxWeight < STRIPES) {
+            throw new IllegalArgumentException("The cache needs a weight of at least " + STRIPES);
+        }
+        this.maxWeight = maxWeight;
+        this.maxStripeWeight = maxWeight / STRIPES;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    private Stripe stripe(long hash) {
+        return stripes[(int) (hash ^ hash >>> 32) & (STRIPES - 1)];
+    }
+
+    /**
+     * Look up a position
+     * @param hash The position hash
+     * @return the analysis, or null if the position is not cached
+     */
+    public PositionAnalysis get(long hash) {
+        Stripe stripe = stripe(hash);
+        PositionAnalysis analysis;
+        synchronized (stripe) {
+            analysis = stripe.entries.get(hash);
+        }
+        (analysis == null ? misses : hits).increment();
+        return analysis;
+    }
+
+    /**
+     * Add a position, evicting the least recently used ones of its stripe if needed
+     * @param hash The position hash
+     * @param analysis The analysis of the position
+     */
+    public void put(long hash, PositionAnalysis analysis) {
+        Stripe stripe = stripe(hash);
+        synchronized (stripe) {
+            PositionAnalysis previous = stripe.entries.put(hash, analysis);
+            stripe.weight += analysis.weight() - (previous == null ? 0 : previous.weight());
+            Iterator<PositionAnalysis> eldest = stripe.entries.values().iterator();
+            while (stripe.weight > maxStripeWeight && eldest.hasNext()) {
+                PositionAnalysis evicted = eldest.next();
+                if (evicted == analysis) {
+                    break; // never evict what was just added
+                }
+                eldest.remove();
+                stripe.weight -= evicted.weight();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Remove every position
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+                stripe.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * Publish the counters over JMX
+     * @param name The name of the cache, for the "name" key of the object name
+     */
+    public void register(String name) {
+        String objectName = "chess:type=AnalysisCache,name=" + ObjectName.quote(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register " + objectName, e);
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hit = hits.sum();
+        long lookups = hit + misses.sum();
+        return lookups == 0 ? 0 : (double) hit / lookups;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.entries.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public long getWeight() {
+        long weight = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                weight += stripe.weight;
+            }
+        }
+        return weight;
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public void resetCounters() {
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d positions, %d hits, %d misses (%.1f%%), %d evictions",
+                getSize(), getHits(), getMisses(), 100 * getHitRate(), getEvictions());
+    }
+}
@@ -0,0 +1,47 @@
+package chess.cache;
+
+/**
+ * Management interface of an {@link AnalysisCache}, registered as "chess:type=AnalysisCache,name=...".
+ */
+public interface AnalysisCacheMXBean {
+
+    /**
+     * @return the number of lookups that found the position
+     */
+    long getHits();
+
+    /**
+     * @return the number of lookups that did not find the position
+     */
+    long getMisses();
+
+    /**
+     * @return hits divided by lookups, or 0 before the first lookup
+     */
+    double getHitRate();
+
+    /**
+     * @return the number of positions evicted to make room
+     */
+    long getEvictions();
+
+    /**
+     * @return the number of positions in the cache
+     */
+    int getSize();
+
+    /**
+     * @return the total weight of the positions in the cache, in legal moves
+     */
+    long getWeight();
+
+    /**
+     * @return the most weight the cache holds
+     */
+    long getMaxWeight();
+
+    /**
+     * Set the counters back to zero; the cached positions are kept
+     */
+    void resetCounters();
+}
@@ -0,0 +1,78 @@
+package chess.cache;
+
+import chess.Position;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the rules say about a position: the legal moves of the player to move and whether
+ * that player is in check. Immutable, so it can be shared by every game that reaches the position.
+ */
+public final class PositionAnalysis {
+
+    private final Map<Position, Set<Position>> legalMoves;
+    private final int moveCount;
+    private final boolean check;
+
+    /**
+     * Create an analysis
+     * @param legalMoves The legal end positions for every start position; copied
+     * @param check Whether the player to move is in check
+     */
+    public PositionAnalysis(Map<Position, Set<Position>> legalMoves, boolean check) {
+        Map<Position, Set<Position>> moves = new HashMap<>();
+        int count = 0;
+        for (Map.Entry<Position, Set<Position>> entry : legalMoves.entrySet()) {
+            moves.put(entry.getKey(), Collections.unmodifiableSet(entry.getValue()));
+            count += entry.getValue().size();
+        }
+        this.legalMoves = Collections.unmodifiableMap(moves);
+        this.moveCount = count;
+        this.check = check;
+    }
+
+    /**
+     * @return the legal end positions for every start position, read-only
+     */
+    public Map<Position, Set<Position>> getLegalMoves() {
+        return legalMoves;
+    }
+
+    /**
+     * @return the number of legal moves
+     */
+    public int getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * @return true if the player to move is in check
+     */
+    public boolean isCheck() {
+        return check;
+    }
+
+    /**
+     * @return true if the player to move is in check and has no legal move
+     */
+    public boolean isCheckMate() {
+        return check && moveCount == 0;
+    }
+
+    /**
+     * @return true if the player to move has no legal move
+     */
+    public boolean isDraw() {
+        return moveCount == 0;
+    }
+
+    /**
+     * @return the cost of keeping the analysis in a cache, in legal moves; at least 1
+     */
+    int weight() {
+        return 1 + moveCount;
+    }
+}
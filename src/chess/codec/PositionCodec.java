@@ -0,0 +1,145 @@
+package chess.codec;
+
+import chess.GameState;
+import chess.Player;
+import chess.Position;
+import chess.PositionFactory;
+import chess.pieces.Bishop;
+import chess.pieces.King;
+import chess.pieces.Knight;
+import chess.pieces.Pawn;
+import chess.pieces.Piece;
+import chess.pieces.PieceType;
+import chess.pieces.Queen;
+import chess.pieces.Rook;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Packs a position into a fixed 24 byte record.
+ *
+ * The first 8 bytes are the occupancy bitmap (bit n set if square n is occupied, a1 = 0, h8 = 63).
+ * The next 16 bytes hold a 4-bit piece code for every occupied square, in square order, two per byte
+ * with the lower square in the high nibble. Codes 0-5 are the white king, queen, rook, bishop, knight
+ * and pawn, codes 6-11 the black ones. The player to move is stored in the black king's code:
+ * {@link #BLACK_KING_TO_MOVE} replaces it when black is to move.
+ */
+public final class PositionCodec {
+
+    /** Size of an encoded position in bytes */
+    public static final int RECORD_SIZE = 24;
+
+    /** Code of the black king when black is to move */
+    private static final int BLACK_KING_TO_MOVE = 12;
+
+    /** Shared piece for every code; pieces are immutable */
+    private static final Piece[] PIECES = {
+            new King(Player.White), new Queen(Player.White), new Rook(Player.White),
+            new Bishop(Player.White), new Knight(Player.White), new Pawn(Player.White),
+            new King(Player.Black), new Queen(Player.Black), new Rook(Player.Black),
+            new Bishop(Player.Black), new Knight(Player.Black), new Pawn(Player.Black),
+            new King(Player.Black)
+    };
+
+    private PositionCodec() {
+    }
+
+    /**
+     * The piece of a code
+     * @param code The code returned by {@link Piece#getCode()}
+     * @return a shared piece
+     * @throws IllegalArgumentException if the code is not a piece code
+     */
+    public static Piece pieceOf(int code) {
+        if (code < 0 || code >= BLACK_KING_TO_MOVE) {
+            throw new IllegalArgumentException("Invalid piece code " + code);
+        }
+        return PIECES[code];
+    }
+
+    /**
+     * Encode a position
+     * @param state The position
+     * @return a new {@link #RECORD_SIZE} byte record
+     */
+    public static byte[] encode(GameState state) {
+        byte[] record = new byte[RECORD_SIZE];
+        encode(state, ByteBuffer.wrap(record));
+        return record;
+    }
+
+    /**
+     * Encode a position at the current position of a buffer, advancing it by {@link #RECORD_SIZE} bytes
+     * @param state The position
+     * @param out The buffer
+     * @throws IllegalArgumentException if there are more than 32 pieces, or black is to move without a black king
+     */
+    public static void encode(GameState state, ByteBuffer out) {
+        byte[] codes = new byte[64];
+        long occupancy = 0;
+        boolean blackToMove = state.getCurrentPlayer() == Player.Black;
+        boolean markedBlackKing = false;
+        for (Map.Entry<Position, Piece> entry : state.getPieces().entrySet()) {
+            Piece piece = entry.getValue();
+            int square = entry.getKey().getY() * 8 + entry.getKey().getX();
+            int code = piece.getCode();
+            if (code == PieceType.COUNT && blackToMove && !markedBlackKing) {
+                code = BLACK_KING_TO_MOVE;
+                markedBlackKing = true;
+            }
+            codes[square] = (byte) code;
+            occupancy |= 1L << square;
+        }
+        if (Long.bitCount(occupancy) > 32) {
+            throw new IllegalArgumentException("More than 32 pieces can not be encoded");
+        }
+        if (blackToMove && !markedBlackKing) {
+            throw new IllegalArgumentException("Black to move without a black king can not be encoded");
+        }
+
+        byte[] nibbles = new byte[16];
+        int count = 0;
+        for (long bits = occupancy; bits != 0; bits &= bits - 1, count++) {
+            int code = codes[Long.numberOfTrailingZeros(bits)];
+            nibbles[count >> 1] |= (count & 1) == 0 ? code << 4 : code;
+        }
+        out.putLong(occupancy);
+        out.put(nibbles);
+    }
+
+    /**
+     * Decode a record
+     * @param record The {@link #RECORD_SIZE} byte record
+     * @return a new game in the encoded position
+     */
+    public static GameState decode(byte[] record) {
+        GameState state = new GameState();
+        decode(ByteBuffer.wrap(record), 0, state);
+        return state;
+    }
+
+    /**
+     * Decode a record into an existing game, replacing its position
+     * @param in The buffer holding the record
+     * @param offset The absolute offset of the record in the buffer; the buffer position is not changed
+     * @param state The game to set up
+     */
+    public static void decode(ByteBuffer in, int offset, GameState state) {
+        long occupancy = in.getLong(offset);
+        state.clear();
+        state.setCurrentPlayer(Player.White);
+        int count = 0;
+        for (long bits = occupancy; bits != 0; bits &= bits - 1, count++) {
+            int packed = in.get(offset + 8 + (count >> 1));
+            int code = ((count & 1) == 0 ? packed >> 4 : packed) & 0x0F;
+            if (code >= PIECES.length) {
+                throw new IllegalArgumentException("Invalid piece code " + code);
+            }
+            if (code == BLACK_KING_TO_MOVE) {
+                state.setCurrentPlayer(Player.Black);
+            }
+            state.placePiece(PositionFactory.getPosition(Long.numberOfTrailingZeros(bits)), PIECES[code]);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package chess.codec;
+
+import chess.GameState;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file of fixed width {@link PositionCodec} records, memory mapped for random access by index.
+ *
+ * The file is a 16 byte header (magic, version, record count) followed by the records.
+ * Files larger than one mapping are mapped in several chunks of whole records.
+ */
+public final class PositionFile implements AutoCloseable {
+
+    /** "CPF1" */
+    private static final int MAGIC = 0x43504631;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    /** Records per mapped chunk; about 1 GB */
+    private static final int RECORDS_PER_CHUNK = (1 << 30) / PositionCodec.RECORD_SIZE;
+
+    private final long size;
+    private final MappedByteBuffer[] chunks;
+
+    private PositionFile(long size, MappedByteBuffer[] chunks) {
+        this.size = size;
+        this.chunks = chunks;
+    }
+
+    /**
+     * Map a position file
+     * @param file The file
+     * @return the mapped file
+     * @throws IOException if the file can not be read or is not a position file
+     */
+    public static PositionFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a position file: " + file);
+            }
+            long size = header.getLong();
+            if (channel.size() < HEADER_SIZE + size * PositionCodec.RECORD_SIZE) {
+                throw new IOException("Truncated position file: " + file);
+            }
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + RECORDS_PER_CHUNK - 1) / RECORDS_PER_CHUNK)];
+            for (int c = 0; c < chunks.length; c++) {
+                long first = (long) c * RECORDS_PER_CHUNK;
+                long records = Math.min(RECORDS_PER_CHUNK, size - first);
+                chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_SIZE + first * PositionCodec.RECORD_SIZE, records * PositionCodec.RECORD_SIZE);
+            }
+            return new PositionFile(size, chunks);
+        }
+    }
+
+    /**
+     * @return the number of positions
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Read a position
+     * @param index The index of the position
+     * @return a new game in that position
+     */
+    public GameState get(long index) {
+        GameState state = new GameState();
+        get(index, state);
+        return state;
+    }
+
+    /**
+     * Read a position into an existing game, replacing its position
+     * @param index The index of the position
+     * @param state The game to set up
+     * @throws IllegalStateException if the file has been closed
+     */
+    public void get(long index, GameState state) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Position " + index + " of " + size);
+        }
+        // read the slot once: close() may empty it at any time
+        MappedByteBuffer chunk = chunks[(int) (index / RECORDS_PER_CHUNK)];
+        if (chunk == null) {
+            throw new IllegalStateException("Position file closed");
+        }
+        int offset = (int) (index % RECORDS_PER_CHUNK) * PositionCodec.RECORD_SIZE;
+        PositionCodec.decode(chunk, offset, state);
+    }
+
+    /**
+     * Release the mappings. The memory is unmapped once the garbage collector reclaims them;
+     * positions can no longer be read.
+     */
+    @Override
+    public void close() {
+        Arrays.fill(chunks, null);
+    }
+
+    /**
+     * Create a position file to be written record by record
+     * @param file The file to create or replace
+     * @return the writer
+     * @throws IOException if the file can not be created
+     */
+    public static Writer create(Path file) throws IOException {
+        return new Writer(file);
+    }
+
+    /**
+     * Streams records to a position file. The record count in the header is filled in on close.
+     */
+    public static final class Writer implements AutoCloseable {
+        private final Path file;
+        private final DataOutputStream out;
+        private final ByteBuffer record = ByteBuffer.allocate(PositionCodec.RECORD_SIZE);
+        private long count;
+
+        private Writer(Path file) throws IOException {
+            this.file = file;
+            OutputStream stream = Files.newOutputStream(file);
+            this.out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(0);
+        }
+
+        /**
+         * Append a position
+         * @param state The position
+         * @throws IOException if the file can not be written
+         */
+        public void write(GameState state) throws IOException {
+            record.clear();
+            PositionCodec.encode(state, record);
+            out.write(record.array());
+            count++;
+        }
+
+        /**
+         * @return the number of positions written so far
+         */
+        public long count() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(Long.BYTES);
+                header.putLong(0, count);
+                channel.write(header, 8);
+            }
+        }
+    }
+}
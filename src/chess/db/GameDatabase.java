@@ -0,0 +1,436 @@
+package chess.db;
+
+import chess.GameState;
+import chess.Position;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A local store of games with an index from position hashes to the games that reached them.
+ *
+ * Moves are kept column by column: "games.col" holds the first ply of every game as a long,
+ * "from.col" and "to.col" hold the start and end square (0-63, a1 = 0) of every ply.
+ * The position index is a set of sorted, memory mapped {@link IndexSegment}s, one per ingested
+ * batch, which are merged once there are too many of them. Queries binary search every segment.
+ *
+ * "manifest" records the committed state: the number of games and plies and the live segments.
+ * Ingesting and merging write their data first and then replace the manifest in one atomic rename,
+ * which is the commit. Opening a database ignores whatever was written after the last commit:
+ * columns are cut back to their committed length and segments missing from the manifest are deleted.
+ *
+ * A database is not thread safe; use one writer at a time.
+ */
+public class GameDatabase implements AutoCloseable {
+
+    /** Number of segments that triggers a merge */
+    private static final int MAX_SEGMENTS = 8;
+
+    private static final String GAMES_FILE = "games.col";
+    private static final String FROM_FILE = "from.col";
+    private static final String TO_FILE = "to.col";
+    private static final String SEGMENT_PREFIX = "positions-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String MANIFEST_FILE = "manifest";
+
+    /** "CDB1" */
+    private static final int MAGIC = 0x43444231;
+    private static final int VERSION = 1;
+
+    private final Path directory;
+    private final FileChannel games;
+    private final FileChannel from;
+    private final FileChannel to;
+
+    /** The committed index segments, oldest first */
+    private final List<IndexSegment> segments = new ArrayList<>();
+
+    /** Number of committed games; the columns may hold more that were never committed */
+    private long gameCount;
+
+    /** Number of committed plies */
+    private long plyCount;
+
+    /** Number of the next segment file */
+    private int nextSegment;
+
+    private GameDatabase(Path directory) throws IOException {
+        this.directory = directory;
+        this.games = openColumn(GAMES_FILE);
+        this.from = openColumn(FROM_FILE);
+        this.to = openColumn(TO_FILE);
+    }
+
+    private FileChannel openColumn(String name) throws IOException {
+        return FileChannel.open(directory.resolve(name), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Open a database, creating it if the directory is empty or missing
+     * @param directory The directory of the database
+     * @return the database
+     * @throws IOException if the files can not be read or created
+     */
+    public static GameDatabase open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        GameDatabase database = new GameDatabase(directory);
+        try {
+            database.recover();
+        } catch (IOException | RuntimeException e) {
+            database.close();
+            throw e;
+        }
+        return database;
+    }
+
+    /**
+     * Load the committed state and drop everything written after the last commit
+     */
+    private void recover() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(Path::toString));
+
+        Path manifest = directory.resolve(MANIFEST_FILE);
+        Set<Path> committed = new HashSet<>();
+        if (Files.exists(manifest)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new IOException("Not a game database manifest: " + manifest);
+                }
+                gameCount = in.readLong();
+                plyCount = in.readLong();
+                nextSegment = in.readInt();
+                for (int i = in.readInt(); i > 0; i--) {
+                    committed.add(segmentFile(in.readInt()));
+                }
+            } catch (EOFException e) {
+                throw new IOException("Truncated game database manifest: " + manifest, e);
+            }
+            if (games.size() < gameCount * Long.BYTES || from.size() < plyCount || to.size() < plyCount) {
+                throw new IOException("Truncated game columns in " + directory);
+            }
+        }
+        // without a manifest the database was never committed: it starts empty and whatever a
+        // first, interrupted batch left on disk is dropped below
+
+        for (Path file : files) {
+            if (committed.remove(file)) {
+                segments.add(IndexSegment.open(file));
+            } else {
+                Files.delete(file);
+            }
+        }
+        if (!committed.isEmpty()) {
+            throw new IOException("Missing index segment: " + committed.iterator().next());
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.tmp")) {
+            for (Path file : stream) {
+                Files.delete(file);
+            }
+        }
+        games.truncate(gameCount * Long.BYTES);
+        from.truncate(plyCount);
+        to.truncate(plyCount);
+        if (!Files.exists(manifest)) {
+            commit(gameCount, plyCount, segments);
+        }
+    }
+
+    /**
+     * Make a state of the database the committed one by replacing the manifest atomically.
+     * The columns and segments it refers to must already be on disk.
+     */
+    private void commit(long games, long plies, List<IndexSegment> live) throws IOException {
+        Path manifest = directory.resolve(MANIFEST_FILE);
+        Path temp = manifest.resolveSibling(MANIFEST_FILE + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(games);
+            out.writeLong(plies);
+            out.writeInt(nextSegment);
+            out.writeInt(live.size());
+            for (IndexSegment segment : live) {
+                out.writeInt(segmentNumber(segment.file()));
+            }
+        }
+        IndexSegment.sync(temp);
+        Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static int segmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * @return the number of stored games
+     */
+    public int size() {
+        return (int) gameCount;
+    }
+
+    /**
+     * Replay and store a batch of games, then index every position they reached.
+     * Nothing is stored if any game holds an illegal move.
+     * @param batch The games; every game is a list of moves such as "e2e4"
+     * @return the id of the first game of the batch; the others follow in order
+     * @throws IOException if the database can not be written
+     * @throws IllegalArgumentException if a move is malformed or illegal
+     */
+    public int ingest(List<List<String>> batch) throws IOException {
+        int firstGame = size();
+        long firstPly = plyCount;
+
+        int plies = 0;
+        for (List<String> game : batch) {
+            plies += game.size();
+        }
+        byte[] fromSquares = new byte[plies];
+        byte[] toSquares = new byte[plies];
+        long[] hashes = new long[plies + batch.size()];
+        int[] gameIds = new int[hashes.length];
+        int records = 0;
+        int ply = 0;
+
+        for (int g = 0; g < batch.size(); g++) {
+            GameState state = new GameState();
+            state.reset();
+            hashes[records] = state.getPositionHash();
+            gameIds[records++] = firstGame + g;
+            for (String move : batch.get(g)) {
+                if (move.length() != 4 || !state.move(move.substring(0, 2), move.substring(2))) {
+                    throw new IllegalArgumentException("Illegal move '" + move + "' in game " + (g + 1) + " of the batch");
+                }
+                fromSquares[ply] = square(move.substring(0, 2));
+                toSquares[ply++] = square(move.substring(2));
+                hashes[records] = state.getPositionHash();
+                gameIds[records++] = firstGame + g;
+            }
+        }
+
+        // columns and segment first, then the commit; until then the data on disk is ignored
+        ByteBuffer offsets = ByteBuffer.allocate(batch.size() * Long.BYTES);
+        long start = firstPly;
+        for (List<String> game : batch) {
+            offsets.putLong(start);
+            start += game.size();
+        }
+        offsets.flip();
+        write(games, offsets, gameCount * Long.BYTES);
+        write(from, ByteBuffer.wrap(fromSquares), firstPly);
+        write(to, ByteBuffer.wrap(toSquares), firstPly);
+        games.force(false);
+        from.force(false);
+        to.force(false);
+
+        sort(hashes, gameIds, 0, records - 1);
+        int unique = 0;
+        for (int i = 0; i < records; i++) {
+            if (unique == 0 || hashes[i] != hashes[unique - 1] || gameIds[i] != gameIds[unique - 1]) {
+                hashes[unique] = hashes[i];
+                gameIds[unique++] = gameIds[i];
+            }
+        }
+        Path file = segmentFile(nextSegment++);
+        IndexSegment.write(file, hashes, gameIds, unique);
+        List<IndexSegment> live = new ArrayList<>(segments);
+        live.add(IndexSegment.open(file));
+        commit(gameCount + batch.size(), firstPly + plies, live);
+        gameCount += batch.size();
+        plyCount += plies;
+        segments.add(live.get(live.size() - 1));
+
+        if (segments.size() > MAX_SEGMENTS) {
+            compact();
+        }
+        return firstGame;
+    }
+
+    private static byte square(String colrow) {
+        Position position = new Position(colrow);
+        return (byte) (position.getY() * 8 + position.getX());
+    }
+
+    /**
+     * Write at a position, overwriting anything left there by a batch that was never committed
+     */
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * Sort records by hash, then game id
+     */
+    private static void sort(long[] hashes, int[] games, int low, int high) {
+        while (low < high) {
+            long pivotHash = hashes[(low + high) >>> 1];
+            int pivotGame = games[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (compare(hashes[i], games[i], pivotHash, pivotGame) < 0) {
+                    i++;
+                }
+                while (compare(hashes[j], games[j], pivotHash, pivotGame) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    long hash = hashes[i];
+                    hashes[i] = hashes[j];
+                    hashes[j] = hash;
+                    int game = games[i];
+                    games[i] = games[j];
+                    games[j] = game;
+                    i++;
+                    j--;
+                }
+            }
+            // recurse into the smaller half to bound the stack depth
+            if (j - low < high - i) {
+                sort(hashes, games, low, j);
+                low = i;
+            } else {
+                sort(hashes, games, i, high);
+                high = j;
+            }
+        }
+    }
+
+    private static int compare(long hash, int game, long otherHash, int otherGame) {
+        int result = Long.compare(hash, otherHash);
+        return result != 0 ? result : Integer.compare(game, otherGame);
+    }
+
+    /**
+     * Merge the smallest segments into one, as long as the result fits into a single mapping
+     * @throws IOException if the merged segment can not be written
+     */
+    public void compact() throws IOException {
+        List<IndexSegment> candidates = new ArrayList<>(segments);
+        candidates.sort(Comparator.comparingInt(IndexSegment::count));
+        List<IndexSegment> merged = new ArrayList<>();
+        long total = 0;
+        for (IndexSegment segment : candidates) {
+            if (total + segment.count() > IndexSegment.MAX_RECORDS) {
+                break;
+            }
+            merged.add(segment);
+            total += segment.count();
+        }
+        if (merged.size() < 2) {
+            return;
+        }
+        Path file = segmentFile(nextSegment++);
+        IndexSegment.merge(file, merged);
+        List<IndexSegment> live = new ArrayList<>(segments);
+        live.removeAll(merged);
+        live.add(IndexSegment.open(file));
+        commit(gameCount, plyCount, live);
+        segments.clear();
+        segments.addAll(live);
+        // a crash before these are gone leaves them out of the manifest, so the next open deletes them
+        for (IndexSegment segment : merged) {
+            Files.deleteIfExists(segment.file());
+        }
+    }
+
+    private Path segmentFile(int number) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Find the games that reached a position
+     * @param state The position
+     * @return the ids of the games, in ascending order
+     */
+    public int[] findGames(GameState state) {
+        return findGames(state.getPositionHash());
+    }
+
+    /**
+     * Find the games that reached a position
+     * @param positionHash The hash of the position, see {@link GameState#getPositionHash()}
+     * @return the ids of the games, in ascending order
+     */
+    public int[] findGames(long positionHash) {
+        int[][] found = {new int[8]};
+        int[] size = {0};
+        for (IndexSegment segment : segments) {
+            segment.find(positionHash, game -> {
+                if (size[0] == found[0].length) {
+                    found[0] = Arrays.copyOf(found[0], size[0] * 2);
+                }
+                found[0][size[0]++] = game;
+            });
+        }
+        int[] result = Arrays.copyOf(found[0], size[0]);
+        if (segments.size() > 1) {
+            Arrays.sort(result);
+        }
+        return result;
+    }
+
+    /**
+     * Read the moves of a stored game
+     * @param game The game id
+     * @return the moves, i.e. "e2e4"
+     * @throws IOException if the database can not be read
+     */
+    public List<String> getMoves(int game) throws IOException {
+        if (game < 0 || game >= size()) {
+            throw new IllegalArgumentException("No such game: " + game);
+        }
+        long start = readLong(games, (long) game * Long.BYTES);
+        long end = game + 1 < size() ? readLong(games, (long) (game + 1) * Long.BYTES) : plyCount;
+        ByteBuffer fromSquares = ByteBuffer.allocate((int) (end - start));
+        ByteBuffer toSquares = ByteBuffer.allocate((int) (end - start));
+        from.read(fromSquares, start);
+        to.read(toSquares, start);
+
+        List<String> moves = new ArrayList<>();
+        for (int i = 0; i < fromSquares.capacity(); i++) {
+            moves.add(name(fromSquares.get(i)) + name(toSquares.get(i)));
+        }
+        return moves;
+    }
+
+    private static String name(byte square) {
+        return "" + (char) (Position.MIN_COLUMN + (square & 7)) + ((square >> 3) + Position.MIN_ROW);
+    }
+
+    private static long readLong(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        channel.read(buffer, position);
+        return buffer.getLong(0);
+    }
+
+    @Override
+    public void close() throws IOException {
+        games.close();
+        from.close();
+        to.close();
+    }
+}
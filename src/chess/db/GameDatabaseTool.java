@@ -0,0 +1,88 @@
+package chess.db;
+
+import chess.GameState;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Command line access to a {@link GameDatabase}.
+ */
+public final class GameDatabaseTool {
+
+    /** Games replayed and indexed per segment */
+    private static final int BATCH_SIZE = 10_000;
+
+    private GameDatabaseTool() {
+    }
+
+    /**
+     * Main driver
+     * @param args "ingest &lt;db&gt; &lt;file&gt;" to store a file with one game per line, i.e. "e2e4 e7e5 g1f3";
+     *             "find &lt;db&gt; [move...]" to list the games reaching the position after the moves;
+     *             "show &lt;db&gt; &lt;id&gt;" to print the moves of a game
+     * @throws IOException if the database or input can not be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: GameDatabaseTool ingest <db> <file> | find <db> [move...] | show <db> <id>");
+            return;
+        }
+        try (GameDatabase database = GameDatabase.open(Paths.get(args[1]))) {
+            if (args[0].equals("ingest") && args.length == 3) {
+                ingest(database, args[2]);
+            } else if (args[0].equals("find")) {
+                find(database, Arrays.asList(args).subList(2, args.length));
+            } else if (args[0].equals("show") && args.length == 3) {
+                System.out.println(String.join(" ", database.getMoves(Integer.parseInt(args[2]))));
+            } else {
+                System.out.println("Unknown command: " + args[0]);
+            }
+        }
+    }
+
+    private static void ingest(GameDatabase database, String file) throws IOException {
+        long start = System.nanoTime();
+        int total = 0;
+        List<List<String>> batch = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    batch.add(Arrays.asList(line.split("\\s+")));
+                }
+                if (batch.size() == BATCH_SIZE) {
+                    database.ingest(batch);
+                    total += batch.size();
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            database.ingest(batch);
+            total += batch.size();
+        }
+        System.out.println("Ingested " + total + " games in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    private static void find(GameDatabase database, List<String> moves) {
+        GameState state = new GameState();
+        state.reset();
+        for (String move : moves) {
+            if (move.length() != 4 || !state.move(move.substring(0, 2), move.substring(2))) {
+                System.out.println("Illegal move: " + move);
+                return;
+            }
+        }
+        long start = System.nanoTime();
+        int[] games = database.findGames(state);
+        long micros = (System.nanoTime() - start) / 1000;
+        System.out.println(games.length + " game(s) in " + micros + " us: " + Arrays.toString(games));
+    }
+}
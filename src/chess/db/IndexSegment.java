@@ -0,0 +1,175 @@
+package chess.db;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * An immutable, memory mapped run of (position hash, game id) records sorted by hash, then game id.
+ *
+ * The file is a 16 byte header (magic, version, record count) followed by 12 byte records.
+ */
+final class IndexSegment {
+
+    /** "CPS1" */
+    private static final int MAGIC = 0x43505331;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 12;
+
+    /** Largest number of records that fits into one mapping */
+    static final int MAX_RECORDS = (Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE;
+
+    private final Path file;
+    private final int count;
+    private final MappedByteBuffer records;
+
+    private IndexSegment(Path file, int count, MappedByteBuffer records) {
+        this.file = file;
+        this.count = count;
+        this.records = records;
+    }
+
+    /**
+     * Map a segment file
+     * @param file The file
+     * @return the segment
+     * @throws IOException if the file can not be read or is not a segment
+     */
+    static IndexSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not an index segment: " + file);
+            }
+            long count = header.getLong();
+            if (channel.size() != HEADER_SIZE + count * RECORD_SIZE) {
+                throw new IOException("Truncated index segment: " + file);
+            }
+            return new IndexSegment(file, (int) count, channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, count * RECORD_SIZE));
+        }
+    }
+
+    /**
+     * Write sorted records to a new segment file. The file appears atomically.
+     * @param file The file to create
+     * @param hashes The hash of every record, sorted
+     * @param games The game of every record
+     * @param count The number of records
+     * @throws IOException if the file can not be written
+     */
+    static void write(Path file, long[] hashes, int[] games, int count) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(hashes[i]);
+                out.writeInt(games[i]);
+            }
+        }
+        sync(temp);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * K-way merge of segments into a new segment file
+     * @param file The file to create
+     * @param segments The segments to merge; together they must hold at most {@link #MAX_RECORDS} records
+     * @throws IOException if the file can not be written
+     */
+    static void merge(Path file, List<IndexSegment> segments) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        long total = 0;
+        for (IndexSegment segment : segments) {
+            total += segment.count;
+        }
+        int[] cursors = new int[segments.size()];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(total);
+            for (long written = 0; written < total; written++) {
+                int best = -1;
+                for (int s = 0; s < cursors.length; s++) {
+                    if (cursors[s] < segments.get(s).count
+                            && (best < 0 || segments.get(s).compare(cursors[s], segments.get(best), cursors[best]) < 0)) {
+                        best = s;
+                    }
+                }
+                IndexSegment segment = segments.get(best);
+                out.writeLong(segment.hashAt(cursors[best]));
+                out.writeInt(segment.gameAt(cursors[best]));
+                cursors[best]++;
+            }
+        }
+        sync(temp);
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Flush a file to the disk, so that it is complete before it is renamed into place
+     * @param file The file
+     * @throws IOException if the file can not be flushed
+     */
+    static void sync(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    private int compare(int index, IndexSegment other, int otherIndex) {
+        int result = Long.compare(hashAt(index), other.hashAt(otherIndex));
+        return result != 0 ? result : Integer.compare(gameAt(index), other.gameAt(otherIndex));
+    }
+
+    /**
+     * Report every game recorded for a hash
+     * @param hash The position hash
+     * @param games Receives the game ids, in ascending order
+     */
+    void find(long hash, IntConsumer games) {
+        // binary search for the first record with the hash
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (hashAt(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < count && hashAt(i) == hash; i++) {
+            games.accept(gameAt(i));
+        }
+    }
+
+    private long hashAt(int index) {
+        return records.getLong(index * RECORD_SIZE);
+    }
+
+    private int gameAt(int index) {
+        return records.getInt(index * RECORD_SIZE + 8);
+    }
+
+    int count() {
+        return count;
+    }
+
+    Path file() {
+        return file;
+    }
+}
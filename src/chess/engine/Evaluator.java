@@ -0,0 +1,16 @@
+package chess.engine;
+
+import chess.GameState;
+
+/**
+ * Static evaluation of a position, used at the leaves of a search.
+ */
+public interface Evaluator {
+
+    /**
+     * Evaluate a position
+     * @param state The position
+     * @return the score in centipawns, from the point of view of the player to move
+     */
+    int evaluate(GameState state);
+}
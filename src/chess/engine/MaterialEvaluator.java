@@ -0,0 +1,32 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.pieces.Piece;
+
+/**
+ * Counts material: pawn 100, knight and bishop 300, rook 500, queen 900.
+ */
+public class MaterialEvaluator implements Evaluator {
+
+    /** Value of every piece type, in type code order: king, queen, rook, bishop, knight, pawn */
+    private static final int[] VALUES = {0, 900, 500, 300, 300, 100};
+
+    @Override
+    public int evaluate(GameState state) {
+        int score = 0;
+        for (Piece piece : state.getPieces().values()) {
+            int value = valueOf(piece);
+            score += piece.getOwner() == state.getCurrentPlayer() ? value : -value;
+        }
+        return score;
+    }
+
+    /**
+     * The material value of a piece
+     * @param piece The piece
+     * @return the value in centipawns; 0 for the king
+     */
+    public static int valueOf(Piece piece) {
+        return VALUES[piece.getType().ordinal()];
+    }
+}
@@ -0,0 +1,57 @@
+package chess.engine;
+
+import chess.Position;
+
+/**
+ * A move from one position to another, written in coordinate notation such as "e2e4".
+ */
+public final class Move {
+
+    private final Position start;
+    private final Position end;
+
+    public Move(Position start, Position end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Parse a move in coordinate notation
+     * @param move The move, i.e. "e2e4"
+     * @return the move
+     * @throws IllegalArgumentException if the move is not two squares
+     */
+    public static Move parse(String move) {
+        if (move.length() != 4) {
+            throw new IllegalArgumentException("Not a move: " + move);
+        }
+        return new Move(new Position(move.substring(0, 2)), new Position(move.substring(2)));
+    }
+
+    public Position getStart() {
+        return start;
+    }
+
+    public Position getEnd() {
+        return end;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Move move = (Move) o;
+        return start.equals(move.start) && end.equals(move.end);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * start.hashCode() + end.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return start.toString() + end;
+    }
+}
@@ -0,0 +1,124 @@
+package chess.engine;
+
+import chess.Player;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A fixed-size table of {@link PawnStructure} by pawn hash, shared by any number of searches and threads.
+ *
+ * Each entry is four longs in one array: a check word, the score and the two passed pawn masks.
+ * The slot is chosen by the low bits of the pawn hash and a new structure always replaces the old
+ * one. No lock is taken: the check word is the hash XORed with the other three words, so an entry
+ * torn by two threads writing at once, or holding another structure, fails the check and reads as
+ * a miss.
+ */
+public class PawnHashTable implements PawnHashTableMXBean {
+
+    /** Longs per entry */
+    private static final int ENTRY_SIZE = 4;
+
+    /** Mixed into the check word, so that an empty entry never matches */
+    private static final long USED = 0x9E3779B97F4A7C15L;
+
+    private final long[] entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a table
+     * @param capacity The number of entries, a power of two; 32 bytes each
+     */
+    public PawnHashTable(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1 || capacity > Integer.MAX_VALUE / ENTRY_SIZE) {
+            throw new IllegalArgumentException("Pawn hash capacity must be a power of two: " + capacity);
+        }
+        this.entries = new long[capacity * ENTRY_SIZE];
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * Look up a pawn structure
+     * @param pawnHash The pawn hash of the position
+     * @return the structure, or null if it is not in the table
+     */
+    public PawnStructure get(long pawnHash) {
+        int index = ((int) pawnHash & mask) * ENTRY_SIZE;
+        long check = entries[index];
+        long score = entries[index + 1];
+        long whitePassed = entries[index + 2];
+        long blackPassed = entries[index + 3];
+        if ((check ^ score ^ whitePassed ^ blackPassed ^ USED) != pawnHash) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return new PawnStructure((int) score, whitePassed, blackPassed);
+    }
+
+    /**
+     * Store a pawn structure, replacing whatever was in its entry
+     * @param pawnHash The pawn hash of the position
+     * @param structure The structure
+     */
+    public void put(long pawnHash, PawnStructure structure) {
+        int index = ((int) pawnHash & mask) * ENTRY_SIZE;
+        long score = structure.getScore();
+        long whitePassed = structure.getPassedPawns(Player.White);
+        long blackPassed = structure.getPassedPawns(Player.Black);
+        entries[index + 1] = score;
+        entries[index + 2] = whitePassed;
+        entries[index + 3] = blackPassed;
+        entries[index] = pawnHash ^ score ^ whitePassed ^ blackPassed ^ USED;
+    }
+
+    /**
+     * Publish the counters over JMX
+     * @param name The name of the table, for the "name" key of the object name
+     */
+    public void register(String name) {
+        String objectName = "chess:type=PawnHashTable,name=" + ObjectName.quote(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register " + objectName, e);
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRate() {
+        long hit = hits.sum();
+        long lookups = hit + misses.sum();
+        return lookups == 0 ? 0 : (double) hit / lookups;
+    }
+
+    @Override
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public void resetCounters() {
+        hits.reset();
+        misses.reset();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries, %d hits, %d misses (%.1f%%)", getCapacity(), getHits(), getMisses(), 100 * getHitRate());
+    }
+}
@@ -0,0 +1,32 @@
+package chess.engine;
+
+/**
+ * Management interface of a {@link PawnHashTable}, registered as "chess:type=PawnHashTable,name=...".
+ */
+public interface PawnHashTableMXBean {
+
+    /**
+     * @return the number of lookups that found the pawn structure
+     */
+    long getHits();
+
+    /**
+     * @return the number of lookups that did not find the pawn structure
+     */
+    long getMisses();
+
+    /**
+     * @return hits divided by lookups, or 0 before the first lookup
+     */
+    double getHitRate();
+
+    /**
+     * @return the number of entries of the table
+     */
+    int getCapacity();
+
+    /**
+     * Set the counters back to zero; the entries are kept
+     */
+    void resetCounters();
+}
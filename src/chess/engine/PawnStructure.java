@@ -0,0 +1,133 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Player;
+import chess.Position;
+import chess.pieces.Piece;
+import chess.pieces.PieceType;
+
+import java.util.Map;
+
+/**
+ * The evaluation terms that depend on the pawns alone: doubled, isolated and passed pawns.
+ * Immutable; computed once per pawn structure and kept in a {@link PawnHashTable}.
+ */
+public final class PawnStructure {
+
+    /** Penalty for every pawn beyond the first on a file */
+    static final int DOUBLED = -10;
+
+    /** Penalty for a pawn with no friendly pawn on a neighbouring file */
+    static final int ISOLATED = -15;
+
+    /** Bonus of a passed pawn by rank, counted from the pawn's own side */
+    static final int[] PASSED = {0, 5, 10, 20, 35, 60, 100, 0};
+
+    private static final long FILE_A = 0x0101010101010101L;
+
+    private final int score;
+    private final long whitePassed;
+    private final long blackPassed;
+
+    /**
+     * @param score The pawn score for white, in centipawns
+     * @param whitePassed The squares of the white passed pawns, one bit per square, a1 = bit 0
+     * @param blackPassed The squares of the black passed pawns
+     */
+    PawnStructure(int score, long whitePassed, long blackPassed) {
+        this.score = score;
+        this.whitePassed = whitePassed;
+        this.blackPassed = blackPassed;
+    }
+
+    /**
+     * Evaluate the pawns of a position
+     * @param state The position
+     * @return the pawn terms
+     */
+    public static PawnStructure of(GameState state) {
+        long white = 0;
+        long black = 0;
+        for (Map.Entry<Position, Piece> entry : state.getPieces().entrySet()) {
+            Piece piece = entry.getValue();
+            if (piece.getType() == PieceType.PAWN) {
+                long bit = 1L << (entry.getKey().getY() * 8 + entry.getKey().getX());
+                if (piece.getOwner() == Player.White) {
+                    white |= bit;
+                } else {
+                    black |= bit;
+                }
+            }
+        }
+        return of(white, black);
+    }
+
+    /**
+     * Evaluate the pawns given as bit sets
+     * @param white The squares of the white pawns, a1 = bit 0
+     * @param black The squares of the black pawns
+     * @return the pawn terms
+     */
+    static PawnStructure of(long white, long black) {
+        long whitePassed = 0;
+        long blackPassed = 0;
+        int score = 0;
+        for (int file = 0; file < 8; file++) {
+            long fileMask = FILE_A << file;
+            long neighbours = (file > 0 ? fileMask >>> 1 : 0) | (file < 7 ? fileMask << 1 : 0);
+            score += DOUBLED * Math.max(0, Long.bitCount(white & fileMask) - 1);
+            score -= DOUBLED * Math.max(0, Long.bitCount(black & fileMask) - 1);
+            if ((white & neighbours) == 0) {
+                score += ISOLATED * Long.bitCount(white & fileMask);
+            }
+            if ((black & neighbours) == 0) {
+                score -= ISOLATED * Long.bitCount(black & fileMask);
+            }
+        }
+        for (long pawns = white; pawns != 0; pawns &= pawns - 1) {
+            int square = Long.numberOfTrailingZeros(pawns);
+            if ((black & frontSpan(square, true)) == 0) {
+                whitePassed |= 1L << square;
+                score += PASSED[square >> 3];
+            }
+        }
+        for (long pawns = black; pawns != 0; pawns &= pawns - 1) {
+            int square = Long.numberOfTrailingZeros(pawns);
+            if ((white & frontSpan(square, false)) == 0) {
+                blackPassed |= 1L << square;
+                score -= PASSED[7 - (square >> 3)];
+            }
+        }
+        return new PawnStructure(score, whitePassed, blackPassed);
+    }
+
+    /**
+     * The squares ahead of a pawn on its own and the neighbouring files
+     * @param square The square of the pawn
+     * @param white true for a white pawn, which moves up the board
+     * @return the squares, one bit each
+     */
+    private static long frontSpan(int square, boolean white) {
+        int file = square & 7;
+        long files = FILE_A << file;
+        files |= (file > 0 ? files >>> 1 : 0) | (file < 7 ? files << 1 : 0);
+        int rank = square >> 3;
+        long ahead = white ? (rank == 7 ? 0 : -1L << (8 * (rank + 1))) : (1L << (8 * rank)) - 1;
+        return files & ahead;
+    }
+
+    /**
+     * @return the pawn score for white, in centipawns; negate it for black
+     */
+    public int getScore() {
+        return score;
+    }
+
+    /**
+     * @param player A player
+     * @return the squares of the player's passed pawns, one bit per square, a1 = bit 0
+     */
+    public long getPassedPawns(Player player) {
+        return player == Player.White ? whitePassed : blackPassed;
+    }
+}
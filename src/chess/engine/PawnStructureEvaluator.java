@@ -0,0 +1,41 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Player;
+
+/**
+ * Material plus the pawn structure terms of {@link PawnStructure}, looked up by pawn hash so
+ * they are computed once per pawn structure rather than at every leaf.
+ */
+public class PawnStructureEvaluator implements Evaluator {
+
+    private final MaterialEvaluator material = new MaterialEvaluator();
+    private final PawnHashTable pawns;
+
+    /**
+     * Create an evaluator
+     * @param pawns The table of pawn structures; may be shared with other evaluators and threads
+     */
+    public PawnStructureEvaluator(PawnHashTable pawns) {
+        this.pawns = pawns;
+    }
+
+    @Override
+    public int evaluate(GameState state) {
+        long pawnHash = state.getPawnHash();
+        PawnStructure structure = pawns.get(pawnHash);
+        if (structure == null) {
+            structure = PawnStructure.of(state);
+            pawns.put(pawnHash, structure);
+        }
+        int score = structure.getScore();
+        return material.evaluate(state) + (state.getCurrentPlayer() == Player.White ? score : -score);
+    }
+
+    /**
+     * @return the table of pawn structures
+     */
+    public PawnHashTable getPawnHashTable() {
+        return pawns;
+    }
+}
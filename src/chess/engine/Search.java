@@ -0,0 +1,131 @@
+package chess.engine;
+
+import chess.GameState;
+import chess.Position;
+import chess.pieces.Piece;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fixed depth negamax search with alpha-beta pruning.
+ * The search plays moves on the given game and takes them back, so a game must not be shared
+ * with other threads while it is searched.
+ */
+public class Search {
+
+    /** Score of being mated now; mates further away score closer to zero */
+    public static final int MATE_SCORE = 100_000;
+
+    private final Evaluator evaluator;
+
+    /** Nodes visited by the current search */
+    private long nodes;
+
+    public Search(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * The outcome of a search
+     */
+    public static final class Result {
+        private final Move bestMove;
+        private final int score;
+        private final long nodes;
+
+        Result(Move bestMove, int score, long nodes) {
+            this.bestMove = bestMove;
+            this.score = score;
+            this.nodes = nodes;
+        }
+
+        /**
+         * @return the best move, or null if the player to move has no legal move
+         */
+        public Move getBestMove() {
+            return bestMove;
+        }
+
+        /**
+         * @return the score in centipawns for the player to move
+         */
+        public int getScore() {
+            return score;
+        }
+
+        /**
+         * @return the number of positions visited
+         */
+        public long getNodes() {
+            return nodes;
+        }
+    }
+
+    /**
+     * Search a position
+     * @param state The position; it is restored before returning
+     * @param depth The depth in plies, at least 1
+     * @return the best move and its score
+     */
+    public Result search(GameState state, int depth) {
+        nodes = 1;
+        Move bestMove = null;
+        int alpha = -MATE_SCORE - 1;
+        for (Move move : orderedMoves(state)) {
+            Piece captured = state.makeMove(move.getStart(), move.getEnd());
+            int score = -negamax(state, depth - 1, -MATE_SCORE - 1, -alpha, 1);
+            state.unmakeMove(move.getStart(), move.getEnd(), captured);
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+            }
+        }
+        if (bestMove == null) {
+            return new Result(null, state.isCheck() ? -MATE_SCORE : 0, nodes);
+        }
+        return new Result(bestMove, alpha, nodes);
+    }
+
+    private int negamax(GameState state, int depth, int alpha, int beta, int ply) {
+        nodes++;
+        List<Move> moves = orderedMoves(state);
+        if (moves.isEmpty()) {
+            return state.isCheck() ? -MATE_SCORE + ply : 0;
+        }
+        if (depth <= 0) {
+            return evaluator.evaluate(state);
+        }
+        for (Move move : moves) {
+            Piece captured = state.makeMove(move.getStart(), move.getEnd());
+            int score = -negamax(state, depth - 1, -beta, -alpha, ply + 1);
+            state.unmakeMove(move.getStart(), move.getEnd(), captured);
+            if (score >= beta) {
+                return score;
+            }
+            alpha = Math.max(alpha, score);
+        }
+        return alpha;
+    }
+
+    /**
+     * Legal moves with captures of the most valuable pieces first, so that alpha-beta cuts early
+     * @param state The position
+     * @return the moves
+     */
+    static List<Move> orderedMoves(GameState state) {
+        Map<Position, Piece> pieces = state.getPieces();
+        List<Move> captures = new ArrayList<>();
+        List<Move> quiet = new ArrayList<>();
+        for (Map.Entry<Position, Set<Position>> entry : state.getLegalMoves().entrySet()) {
+            for (Position end : entry.getValue()) {
+                (pieces.get(end) != null ? captures : quiet).add(new Move(entry.getKey(), end));
+            }
+        }
+        captures.sort((a, b) -> MaterialEvaluator.valueOf(pieces.get(b.getEnd())) - MaterialEvaluator.valueOf(pieces.get(a.getEnd())));
+        captures.addAll(quiet);
+        return captures;
+    }
+}
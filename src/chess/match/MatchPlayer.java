@@ -0,0 +1,36 @@
+package chess.match;
+
+import chess.GameState;
+import chess.engine.MaterialEvaluator;
+import chess.engine.Move;
+
+/**
+ * One side of a match. A player is used by one game at a time.
+ */
+public interface MatchPlayer {
+
+    /**
+     * Choose a move
+     * @param state The position; it must be left unchanged
+     * @param timeLimitNanos The time to spend on the move, or 0 for no limit
+     * @return a legal move, or null if the player to move has none
+     */
+    Move chooseMove(GameState state, long timeLimitNanos);
+
+    /**
+     * Create a player from its description
+     * @param spec "random", or "search:&lt;depth&gt;" for the alpha-beta search on material
+     * @param seed The seed of any randomness of the player
+     * @return a new player
+     * @throws IllegalArgumentException if the description is not understood
+     */
+    static MatchPlayer create(String spec, long seed) {
+        if (spec.equals("random")) {
+            return new RandomPlayer(seed);
+        }
+        if (spec.startsWith("search:")) {
+            return new SearchPlayer(new MaterialEvaluator(), Integer.parseInt(spec.substring("search:".length())));
+        }
+        throw new IllegalArgumentException("Unknown player: " + spec);
+    }
+}
@@ -0,0 +1,207 @@
+package chess.match;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The running totals of a match between player A and player B, safe to update from many games at once.
+ *
+ * Results are from the point of view of player A. The Elo difference follows from the average
+ * score p as -400 log10(1/p - 1); its error is half the width of the 95% interval of p, taken
+ * from the spread of the individual game scores and mapped through the same formula.
+ */
+public class MatchResult {
+
+    /** Why a game ended */
+    public enum Termination {
+        CHECKMATE, STALEMATE, REPETITION, MATERIAL, MAX_PLIES
+    }
+
+    private static final int WINS = 0;
+    private static final int DRAWS = 1;
+    private static final int LOSSES = 2;
+    private static final int PLIES = 3;
+    private static final int MOVES_A = 4;
+    private static final int NANOS_A = 5;
+    private static final int MOVES_B = 6;
+    private static final int NANOS_B = 7;
+    private static final int TERMINATIONS = 8;
+
+    private final AtomicLongArray totals = new AtomicLongArray(TERMINATIONS + Termination.values().length);
+    private final String playerA;
+    private final String playerB;
+    private volatile long elapsedNanos;
+
+    /**
+     * Create an empty result
+     * @param playerA The description of player A
+     * @param playerB The description of player B
+     */
+    public MatchResult(String playerA, String playerB) {
+        this.playerA = playerA;
+        this.playerB = playerB;
+    }
+
+    /**
+     * Add a finished game
+     * @param score The score of player A: 1, 0.5 or 0
+     * @param termination Why the game ended
+     * @param plies The number of plies played
+     * @param movesA The number of moves chosen by player A
+     * @param nanosA The time player A took over them
+     * @param movesB The number of moves chosen by player B
+     * @param nanosB The time player B took over them
+     */
+    void add(double score, Termination termination, int plies, int movesA, long nanosA, int movesB, long nanosB) {
+        totals.incrementAndGet(score == 1 ? WINS : score == 0 ? LOSSES : DRAWS);
+        totals.incrementAndGet(TERMINATIONS + termination.ordinal());
+        totals.addAndGet(PLIES, plies);
+        totals.addAndGet(MOVES_A, movesA);
+        totals.addAndGet(NANOS_A, nanosA);
+        totals.addAndGet(MOVES_B, movesB);
+        totals.addAndGet(NANOS_B, nanosB);
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getWins() {
+        return totals.get(WINS);
+    }
+
+    public long getDraws() {
+        return totals.get(DRAWS);
+    }
+
+    public long getLosses() {
+        return totals.get(LOSSES);
+    }
+
+    public long getGames() {
+        return getWins() + getDraws() + getLosses();
+    }
+
+    /**
+     * @param termination A reason for games to end
+     * @return the number of games that ended for it
+     */
+    public long getTerminations(Termination termination) {
+        return totals.get(TERMINATIONS + termination.ordinal());
+    }
+
+    /**
+     * @return the average score of player A, 0 to 1
+     */
+    public double getScore() {
+        long games = getGames();
+        return games == 0 ? 0.5 : (getWins() + getDraws() / 2.0) / games;
+    }
+
+    /**
+     * @return the Elo difference of player A over player B; infinite if one side scored everything
+     */
+    public double getElo() {
+        return elo(getScore());
+    }
+
+    /**
+     * @return the 95% error of {@link #getElo()}; infinite if one side scored everything
+     */
+    public double getEloError() {
+        long games = getGames();
+        if (games < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double p = getScore();
+        double variance = (getWins() * (1 - p) * (1 - p) + getDraws() * (0.5 - p) * (0.5 - p)
+                + getLosses() * p * p) / games;
+        double margin = 1.96 * Math.sqrt(variance / games);
+        return (elo(p + margin) - elo(p - margin)) / 2;
+    }
+
+    private static double elo(double score) {
+        if (score <= 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (score >= 1) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * @return games finished per second of wall clock time
+     */
+    public double getGamesPerSecond() {
+        return elapsedNanos == 0 ? 0 : getGames() / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * @return the average time player A took per move, in milliseconds
+     */
+    public double getMillisPerMoveA() {
+        long moves = totals.get(MOVES_A);
+        return moves == 0 ? 0 : totals.get(NANOS_A) / 1e6 / moves;
+    }
+
+    /**
+     * @return the average time player B took per move, in milliseconds
+     */
+    public double getMillisPerMoveB() {
+        long moves = totals.get(MOVES_B);
+        return moves == 0 ? 0 : totals.get(NANOS_B) / 1e6 / moves;
+    }
+
+    /**
+     * @return the average game length in plies
+     */
+    public double getAveragePlies() {
+        long games = getGames();
+        return games == 0 ? 0 : (double) totals.get(PLIES) / games;
+    }
+
+    /**
+     * @return the result as a single line JSON object; infinite values are written as null
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append('{');
+        json.append("\"playerA\":\"").append(playerA).append("\",");
+        json.append("\"playerB\":\"").append(playerB).append("\",");
+        json.append("\"games\":").append(getGames()).append(',');
+        json.append("\"wins\":").append(getWins()).append(',');
+        json.append("\"draws\":").append(getDraws()).append(',');
+        json.append("\"losses\":").append(getLosses()).append(',');
+        json.append("\"score\":").append(number(getScore())).append(',');
+        json.append("\"elo\":").append(number(getElo())).append(',');
+        json.append("\"eloError\":").append(number(getEloError())).append(',');
+        json.append("\"gamesPerSecond\":").append(number(getGamesPerSecond())).append(',');
+        json.append("\"averagePlies\":").append(number(getAveragePlies())).append(',');
+        json.append("\"millisPerMoveA\":").append(number(getMillisPerMoveA())).append(',');
+        json.append("\"millisPerMoveB\":").append(number(getMillisPerMoveB())).append(',');
+        json.append("\"elapsedSeconds\":").append(number(elapsedNanos / 1e9)).append(',');
+        json.append("\"terminations\":{");
+        for (Termination termination : Termination.values()) {
+            if (termination.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(termination.name().toLowerCase(Locale.ROOT)).append("\":")
+                    .append(getTerminations(termination));
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    private static String number(double value) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.4f", value) : "null";
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%s vs %s: +%d =%d -%d (%.1f%%), Elo %+.0f +/- %.0f, %.1f games/s, %.1f plies/game, %.3f / %.3f ms per move",
+                playerA, playerB, getWins(), getDraws(), getLosses(), 100 * getScore(), getElo(), getEloError(),
+                getGamesPerSecond(), getAveragePlies(), getMillisPerMoveA(), getMillisPerMoveB());
+    }
+}
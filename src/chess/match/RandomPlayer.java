@@ -0,0 +1,44 @@
+package chess.match;
+
+import chess.GameState;
+import chess.Position;
+import chess.engine.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Plays a uniformly random legal move; the baseline every engine should beat.
+ */
+public class RandomPlayer implements MatchPlayer {
+
+    private final Random random;
+
+    public RandomPlayer(long seed) {
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public Move chooseMove(GameState state, long timeLimitNanos) {
+        return randomMove(state, random);
+    }
+
+    /**
+     * Pick a random legal move
+     * @param state The position
+     * @param random The source of randomness
+     * @return the move, or null if there is no legal move
+     */
+    static Move randomMove(GameState state, Random random) {
+        List<Move> moves = new ArrayList<>();
+        for (Map.Entry<Position, Set<Position>> entry : state.getLegalMoves().entrySet()) {
+            for (Position end : entry.getValue()) {
+                moves.add(new Move(entry.getKey(), end));
+            }
+        }
+        return moves.isEmpty() ? null : moves.get(random.nextInt(moves.size()));
+    }
+}
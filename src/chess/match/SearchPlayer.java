@@ -0,0 +1,48 @@
+package chess.match;
+
+import chess.GameState;
+import chess.engine.Evaluator;
+import chess.engine.Move;
+import chess.engine.Search;
+
+/**
+ * Plays the best move of an alpha-beta search.
+ *
+ * Without a time limit it searches to its full depth. With one it deepens one ply at a time and
+ * stops starting new iterations once half the time is spent, since the next iteration would
+ * most likely not finish in the other half.
+ */
+public class SearchPlayer implements MatchPlayer {
+
+    private final Search search;
+    private final int depth;
+
+    /**
+     * Create a player
+     * @param evaluator The evaluation of the search
+     * @param depth The maximum depth in plies
+     */
+    public SearchPlayer(Evaluator evaluator, int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("Search depth must be at least 1");
+        }
+        this.search = new Search(evaluator);
+        this.depth = depth;
+    }
+
+    @Override
+    public Move chooseMove(GameState state, long timeLimitNanos) {
+        if (timeLimitNanos <= 0) {
+            return search.search(state, depth).getBestMove();
+        }
+        long start = System.nanoTime();
+        Move best = null;
+        for (int d = 1; d <= depth; d++) {
+            best = search.search(state, d).getBestMove();
+            if (System.nanoTime() - start > timeLimitNanos / 2) {
+                break;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,237 @@
+package chess.match;
+
+import chess.Fen;
+import chess.GameState;
+import chess.Player;
+import chess.engine.Move;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless self-play: many games between two players, run in parallel.
+ *
+ * Games are played in pairs from the same opening with the colours swapped, so neither player
+ * profits from a lopsided start. An opening is a FEN from the openings list, taken in turn,
+ * followed by a number of random plies chosen from the seed and the pair number; the same seed
+ * therefore replays the same openings. A game ends by checkmate or stalemate, or is adjudicated
+ * a draw on the third repetition of a position, when only the kings are left, or after the
+ * maximum number of plies.
+ */
+public class Tournament {
+
+    /** Settings of a match */
+    public static final class Options {
+        /** Number of games; rounded up to whole pairs */
+        public int games = 100;
+        /** Number of games played at once */
+        public int threads = Runtime.getRuntime().availableProcessors();
+        /** Start positions as FEN, taken in turn */
+        public List<String> openings = Collections.singletonList(Fen.START);
+        /** Number of random plies played from each start position */
+        public int randomPlies = 4;
+        /** Time per move in milliseconds; 0 for none */
+        public long moveTimeMillis = 0;
+        /** Number of plies after which a game is a draw */
+        public int maxPlies = 200;
+        /** Seed of the openings and of the players */
+        public long seed = 1;
+    }
+
+    private final Options options;
+    private final String playerA;
+    private final String playerB;
+
+    /**
+     * Create a match
+     * @param options The settings
+     * @param playerA The description of the first player, see {@link MatchPlayer#create}
+     * @param playerB The description of the second player
+     */
+    public Tournament(Options options, String playerA, String playerB) {
+        this.options = options;
+        this.playerA = playerA;
+        this.playerB = playerB;
+        MatchPlayer.create(playerA, 0);
+        MatchPlayer.create(playerB, 0);
+    }
+
+    /**
+     * Play every game
+     * @return the result, from the point of view of the first player
+     * @throws InterruptedException if interrupted while waiting for the games
+     */
+    public MatchResult run() throws InterruptedException {
+        MatchResult result = new MatchResult(playerA, playerB);
+        int pairs = (options.games + 1) / 2;
+        long start = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(options.threads);
+        try {
+            List<Future<?>> games = new ArrayList<>();
+            for (int game = 0; game < pairs * 2; game++) {
+                int number = game;
+                games.add(pool.submit(() -> play(number, result)));
+            }
+            for (Future<?> game : games) {
+                game.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * The start position of a pair of games
+     * @param pair The pair number
+     * @return the position
+     */
+    GameState opening(int pair) {
+        GameState state = Fen.parse(options.openings.get(pair % options.openings.size()));
+        Random random = new Random(options.seed * 31 + pair);
+        for (int ply = 0; ply < options.randomPlies; ply++) {
+            Move move = RandomPlayer.randomMove(state, random);
+            if (move == null) {
+                break;
+            }
+            state.makeMove(move.getStart(), move.getEnd());
+        }
+        return state;
+    }
+
+    private void play(int game, MatchResult result) {
+        GameState state = opening(game / 2);
+        boolean aIsWhite = game % 2 == 0;
+        MatchPlayer a = MatchPlayer.create(playerA, options.seed * 31 + game);
+        MatchPlayer b = MatchPlayer.create(playerB, options.seed * 37 + game);
+        long timeLimit = TimeUnit.MILLISECONDS.toNanos(options.moveTimeMillis);
+        int[] moves = new int[2];
+        long[] nanos = new long[2];
+        Map<Long, Integer> seen = new HashMap<>();
+        seen.put(state.getPositionHash(), 1);
+
+        MatchResult.Termination termination = MatchResult.Termination.MAX_PLIES;
+        double score = 0.5;
+        int plies = 0;
+        for (; plies < options.maxPlies; plies++) {
+            int side = (state.getCurrentPlayer() == Player.White) == aIsWhite ? 0 : 1;
+            long before = System.nanoTime();
+            Move move = (side == 0 ? a : b).chooseMove(state, timeLimit);
+            if (move == null) {
+                if (state.isCheck()) {
+                    termination = MatchResult.Termination.CHECKMATE;
+                    score = side == 0 ? 0 : 1;
+                } else {
+                    termination = MatchResult.Termination.STALEMATE;
+                }
+                break;
+            }
+            nanos[side] += System.nanoTime() - before;
+            moves[side]++;
+            if (state.makeMove(move.getStart(), move.getEnd()) != null && state.getPieces().size() == 2) {
+                plies++;
+                termination = MatchResult.Termination.MATERIAL;
+                break;
+            }
+            if (seen.merge(state.getPositionHash(), 1, Integer::sum) == 3) {
+                plies++;
+                termination = MatchResult.Termination.REPETITION;
+                break;
+            }
+        }
+        result.add(score, termination, plies, moves[0], nanos[0], moves[1], nanos[1]);
+    }
+
+    /**
+     * Play a match and print the result
+     * @param args [-games n] [-threads n] [-openings file] [-random n] [-movetime ms] [-maxplies n] [-seed n]
+     *             [-json file] &lt;player A&gt; &lt;player B&gt;
+     * @throws Exception if the openings can not be read or the summary can not be written
+     */
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        Path json = null;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-"); i++) {
+            switch (args[i]) {
+                case "-games":
+                    options.games = Integer.parseInt(args[++i]);
+                    break;
+                case "-threads":
+                    options.threads = Integer.parseInt(args[++i]);
+                    break;
+                case "-openings":
+                    options.openings = readOpenings(Paths.get(args[++i]));
+                    break;
+                case "-random":
+                    options.randomPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "-movetime":
+                    options.moveTimeMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-maxplies":
+                    options.maxPlies = Integer.parseInt(args[++i]);
+                    break;
+                case "-seed":
+                    options.seed = Long.parseLong(args[++i]);
+                    break;
+                case "-json":
+                    json = Paths.get(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (args.length - i != 2) {
+            System.out.println("Usage: [-games n] [-threads n] [-openings file] [-random n] [-movetime ms]"
+                    + " [-maxplies n] [-seed n] [-json file] <player A> <player B>");
+            System.out.println("Players: random, search:<depth>");
+            return;
+        }
+        MatchResult result = new Tournament(options, args[i], args[i + 1]).run();
+        System.out.println(result);
+        if (json == null) {
+            System.out.println(result.toJson());
+        } else {
+            Files.write(json, Collections.singletonList(result.toJson()));
+        }
+    }
+
+    /**
+     * Read start positions, one FEN per line; blank lines and lines starting with '#' are skipped
+     * @param file The file
+     * @return the positions
+     * @throws IOException if the file can not be read
+     */
+    private static List<String> readOpenings(Path file) throws IOException {
+        List<String> openings = new ArrayList<>();
+        for (String line : Files.readAllLines(file)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                Fen.parse(line);
+                openings.add(line);
+            }
+        }
+        if (openings.isEmpty()) {
+            throw new IllegalArgumentException("No openings in " + file);
+        }
+        return openings;
+    }
+}
@@ -0,0 +1,20 @@
+package chess.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one command of the command line interface.
+ */
+@Name("chess.Command")
+@Label("Command")
+@Category("Chess")
+@Description("A command typed into a game session")
+public class CommandEvent extends Event {
+
+    @Label("Command")
+    public String command;
+}
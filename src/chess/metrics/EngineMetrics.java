@@ -0,0 +1,123 @@
+package chess.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of the rules engine, published over JMX.
+ *
+ * Collection is off unless the JVM runs with -Dchess.metrics=true. Callers test {@link #ENABLED}
+ * before recording; it is a constant, so the JIT removes the disabled instrumentation entirely.
+ * The JFR events in this package are independent of the flag and cost nothing unless a recording
+ * enables them.
+ */
+public final class EngineMetrics implements EngineMetricsMXBean {
+
+    /** Whether metrics are collected */
+    public static final boolean ENABLED = Boolean.getBoolean("chess.metrics");
+
+    /** The JMX name of the metrics */
+    public static final String OBJECT_NAME = "chess:type=EngineMetrics";
+
+    private static final EngineMetrics INSTANCE = new EngineMetrics();
+
+    private final LongAdder positionsGenerated = new LongAdder();
+    private final LongAdder legalityTrials = new LongAdder();
+    private final LongAdder gameOverChecks = new LongAdder();
+    private final LatencyHistogram gameOverCheckLatency = new LatencyHistogram();
+    private final Map<String, LatencyHistogram> commandLatencies = new ConcurrentHashMap<>();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+            } catch (JMException e) {
+                throw new IllegalStateException("Failed to register " + OBJECT_NAME, e);
+            }
+        }
+    }
+
+    private EngineMetrics() {
+    }
+
+    /**
+     * @return the metrics of this JVM
+     */
+    public static EngineMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Count the pseudo-legal move generation of a position
+     */
+    public void positionGenerated() {
+        positionsGenerated.increment();
+    }
+
+    /**
+     * Count moves tried for leaving the own king in check
+     * @param trials The number of moves
+     */
+    public void legalityTrials(int trials) {
+        legalityTrials.add(trials);
+    }
+
+    /**
+     * Record a check, checkmate or draw test
+     * @param nanos How long the test took
+     */
+    public void gameOverCheck(long nanos) {
+        gameOverChecks.increment();
+        gameOverCheckLatency.record(nanos);
+    }
+
+    /**
+     * Record a command
+     * @param command The command name, i.e. "move"; one of a fixed set, since every name keeps a histogram
+     * @param nanos How long the command took
+     */
+    public void command(String command, long nanos) {
+        commandLatencies.computeIfAbsent(command, c -> new LatencyHistogram()).record(nanos);
+    }
+
+    @Override
+    public long getPositionsGenerated() {
+        return positionsGenerated.sum();
+    }
+
+    @Override
+    public long getLegalityTrials() {
+        return legalityTrials.sum();
+    }
+
+    @Override
+    public long getGameOverChecks() {
+        return gameOverChecks.sum();
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getCommandLatencies() {
+        Map<String, LatencySnapshot> result = new TreeMap<>();
+        commandLatencies.forEach((command, histogram) -> result.put(command, histogram.snapshot()));
+        return result;
+    }
+
+    @Override
+    public LatencySnapshot getGameOverCheckLatency() {
+        return gameOverCheckLatency.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        positionsGenerated.reset();
+        legalityTrials.reset();
+        gameOverChecks.reset();
+        gameOverCheckLatency.reset();
+        commandLatencies.values().forEach(LatencyHistogram::reset);
+    }
+}
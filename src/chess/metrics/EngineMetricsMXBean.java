@@ -0,0 +1,39 @@
+package chess.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link EngineMetrics}, registered as "chess:type=EngineMetrics".
+ */
+public interface EngineMetricsMXBean {
+
+    /**
+     * @return the number of positions whose pseudo-legal moves were generated
+     */
+    long getPositionsGenerated();
+
+    /**
+     * @return the number of moves tried to see if they leave the own king in check
+     */
+    long getLegalityTrials();
+
+    /**
+     * @return the number of check, checkmate and draw tests
+     */
+    long getGameOverChecks();
+
+    /**
+     * @return the latency of every command, by command name
+     */
+    Map<String, LatencySnapshot> getCommandLatencies();
+
+    /**
+     * @return the latency of the game over tests
+     */
+    LatencySnapshot getGameOverCheckLatency();
+
+    /**
+     * Reset all counters and histograms
+     */
+    void reset();
+}
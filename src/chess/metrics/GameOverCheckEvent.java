@@ -0,0 +1,23 @@
+package chess.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a check, checkmate or draw test.
+ */
+@Name("chess.GameOverCheck")
+@Label("Game Over Check")
+@Category("Chess")
+@Description("Test for check, checkmate or draw")
+public class GameOverCheckEvent extends Event {
+
+    @Label("Test")
+    public String test;
+
+    @Label("Result")
+    public boolean result;
+}
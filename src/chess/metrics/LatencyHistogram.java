@@ -0,0 +1,59 @@
+package chess.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with one bucket per power of two nanoseconds.
+ * Percentiles are reported as the upper bound of their bucket, so they are accurate to a factor of two.
+ */
+public final class LatencyHistogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final LongAdder totalNanos = new LongAdder();
+
+    /**
+     * Record one sample
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(long nanos) {
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(Math.max(nanos, 1)) - 1);
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * @return a consistent enough copy of the current values
+     */
+    public LatencySnapshot snapshot() {
+        long[] copy = new long[buckets.length()];
+        long samples = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = buckets.get(i);
+            samples += copy[i];
+        }
+        return new LatencySnapshot(samples, samples == 0 ? 0 : totalNanos.sum() / samples / 1000,
+                percentile(copy, samples, 0.5), percentile(copy, samples, 0.99), percentile(copy, samples, 1.0));
+    }
+
+    private static long percentile(long[] buckets, long samples, double fraction) {
+        long rank = (long) Math.ceil(samples * fraction);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0) {
+                return (2L << i) / 1000;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Forget all samples
+     */
+    public void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        totalNanos.reset();
+    }
+}
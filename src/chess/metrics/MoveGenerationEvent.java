@@ -0,0 +1,26 @@
+package chess.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for generating the legal moves of a position, including the legality pass.
+ */
+@Name("chess.MoveGeneration")
+@Label("Move Generation")
+@Category("Chess")
+@Description("Legal move generation for one position")
+public class MoveGenerationEvent extends Event {
+
+    @Label("Player")
+    public String player;
+
+    @Label("Pseudo-legal Moves")
+    public int pseudoLegalMoves;
+
+    @Label("Legal Moves")
+    public int legalMoves;
+}
@@ -0,0 +1,83 @@
+package chess.nnue;
+
+import chess.Player;
+import chess.pieces.Piece;
+
+/**
+ * The hidden layer of a {@link NnueNetwork} for one game, from both views, kept in step with the
+ * board by {@link chess.GameState}: putting a piece on a square adds the weight column of its
+ * input to each view, taking it off subtracts it. A move therefore costs two or three column
+ * updates instead of a pass over the whole board, and taking it back restores the values exactly.
+ */
+public final class NnueAccumulator {
+
+    private final NnueNetwork network;
+    private final NnueKernels kernels = NnueKernels.INSTANCE;
+    private final int hiddenSize;
+
+    /** The white view followed by the black view */
+    private final short[] values;
+
+    /**
+     * Create the accumulator of an empty board
+     * @param network The network
+     */
+    public NnueAccumulator(NnueNetwork network) {
+        this.network = network;
+        this.hiddenSize = network.getHiddenSize();
+        this.values = new short[2 * hiddenSize];
+        clear();
+    }
+
+    /**
+     * @return the network of the accumulator
+     */
+    public NnueNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Set the values back to those of an empty board
+     */
+    public void clear() {
+        System.arraycopy(network.getHiddenBiases(), 0, values, 0, hiddenSize);
+        System.arraycopy(network.getHiddenBiases(), 0, values, hiddenSize, hiddenSize);
+    }
+
+    /**
+     * Account for a piece put on the board
+     * @param piece The piece
+     * @param square Its square, y * 8 + x
+     */
+    public void add(Piece piece, int square) {
+        short[] weights = network.getInputWeights();
+        kernels.add(values, 0, weights, NnueNetwork.input(piece, square, false) * hiddenSize, hiddenSize);
+        kernels.add(values, hiddenSize, weights, NnueNetwork.input(piece, square, true) * hiddenSize, hiddenSize);
+    }
+
+    /**
+     * Account for a piece taken off the board
+     * @param piece The piece
+     * @param square Its square, y * 8 + x
+     */
+    public void remove(Piece piece, int square) {
+        short[] weights = network.getInputWeights();
+        kernels.subtract(values, 0, weights, NnueNetwork.input(piece, square, false) * hiddenSize, hiddenSize);
+        kernels.subtract(values, hiddenSize, weights, NnueNetwork.input(piece, square, true) * hiddenSize, hiddenSize);
+    }
+
+    /**
+     * Run the output layer
+     * @param toMove The player to move
+     * @return the score in centipawns, from the point of view of the player to move
+     */
+    public int evaluate(Player toMove) {
+        int us = toMove == Player.White ? 0 : hiddenSize;
+        int them = hiddenSize - us;
+        short[] weights = network.getOutputWeights();
+        int output = network.getOutputBias()
+                + kernels.clippedDot(values, us, weights, 0, hiddenSize, NnueNetwork.QA)
+                + kernels.clippedDot(values, them, weights, hiddenSize, hiddenSize, NnueNetwork.QA);
+        return (int) ((long) output * NnueNetwork.SCALE / (NnueNetwork.QA * NnueNetwork.QB));
+    }
+}
@@ -0,0 +1,30 @@
+package chess.nnue;
+
+import chess.GameState;
+import chess.engine.Evaluator;
+
+/**
+ * Evaluates positions with a {@link NnueNetwork}.
+ *
+ * The first evaluation of a game attaches an accumulator to it, built from the board; from then
+ * on the game keeps it up to date move by move, and evaluating costs only the output layer.
+ * The evaluator holds no state of its own and can be shared by any number of searches.
+ */
+public class NnueEvaluator implements Evaluator {
+
+    private final NnueNetwork network;
+
+    public NnueEvaluator(NnueNetwork network) {
+        this.network = network;
+    }
+
+    @Override
+    public int evaluate(GameState state) {
+        NnueAccumulator accumulator = state.getAccumulator();
+        if (accumulator == null || accumulator.getNetwork() != network) {
+            accumulator = new NnueAccumulator(network);
+            state.setAccumulator(accumulator);
+        }
+        return accumulator.evaluate(state.getCurrentPlayer());
+    }
+}
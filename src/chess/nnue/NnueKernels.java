@@ -0,0 +1,63 @@
+package chess.nnue;
+
+/**
+ * The inner loops of the network: adding weight columns to accumulators and the clipped dot
+ * product of the output layer.
+ *
+ * The vector implementation needs the incubating jdk.incubator.vector module at run time
+ * ("--add-modules jdk.incubator.vector"); without it, or with -Dchess.nnue.vector=false, the
+ * scalar loops are used. Both give exactly the same results.
+ */
+abstract class NnueKernels {
+
+    /** The fastest kernels available in this JVM */
+    static final NnueKernels INSTANCE = select();
+
+    private static NnueKernels select() {
+        if (Boolean.parseBoolean(System.getProperty("chess.nnue.vector", "true"))) {
+            try {
+                return (NnueKernels) Class.forName("chess.nnue.VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // the vector module is not present; fall through
+            }
+        }
+        return new ScalarKernels();
+    }
+
+    /**
+     * Add a weight column to an accumulator, wrapping around on overflow
+     * @param accumulator The accumulator
+     * @param offset The index of the first value to update
+     * @param weights The weights
+     * @param weightOffset The index of the first weight to add
+     * @param length The number of values
+     */
+    abstract void add(short[] accumulator, int offset, short[] weights, int weightOffset, int length);
+
+    /**
+     * Subtract a weight column from an accumulator, wrapping around on overflow
+     * @param accumulator The accumulator
+     * @param offset The index of the first value to update
+     * @param weights The weights
+     * @param weightOffset The index of the first weight to subtract
+     * @param length The number of values
+     */
+    abstract void subtract(short[] accumulator, int offset, short[] weights, int weightOffset, int length);
+
+    /**
+     * Sum the products of the accumulator values, clipped to 0..max, with the weights
+     * @param accumulator The accumulator
+     * @param offset The index of the first value
+     * @param weights The weights
+     * @param weightOffset The index of the first weight
+     * @param length The number of values
+     * @param max The largest value after clipping
+     * @return the sum
+     */
+    abstract int clippedDot(short[] accumulator, int offset, short[] weights, int weightOffset, int length, short max);
+
+    /**
+     * @return a short description of the kernels, for logs
+     */
+    abstract String describe();
+}
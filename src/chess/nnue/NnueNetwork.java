@@ -0,0 +1,199 @@
+package chess.nnue;
+
+import chess.pieces.Piece;
+import chess.pieces.PieceType;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * The quantized weights of an efficiently updatable neural network.
+ *
+ * The network sees the board twice, once from each side. Each view has 768 inputs, one per
+ * piece code and square, with the squares and colours of the black view mirrored so that both
+ * sides see their own pieces as white pieces moving up the board. The inputs feed a hidden layer
+ * of {@link #getHiddenSize()} neurons per view, held as 16-bit accumulators by
+ * {@link NnueAccumulator}. The output is the dot product of both hidden layers, clipped to
+ * 0..{@link #QA}, with the output weights, the view of the player to move first.
+ *
+ * The file is a 16 byte header (magic, version, hidden size, output bias) followed by 16-bit
+ * values: the input weights input by input, the hidden biases and the output weights.
+ */
+public final class NnueNetwork {
+
+    /** Number of inputs of one view: 12 piece codes by 64 squares */
+    public static final int INPUTS = 2 * PieceType.COUNT * 64;
+
+    /** Largest hidden value after clipping; the hidden layer is scaled by this */
+    public static final short QA = 255;
+
+    /** Scale of the output weights */
+    public static final int QB = 64;
+
+    /** Centipawns of an output of QA * QB */
+    public static final int SCALE = 400;
+
+    /** "CNN1" */
+    private static final int MAGIC = 0x434E4E31;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private final int hiddenSize;
+    private final short[] inputWeights;
+    private final short[] hiddenBiases;
+    private final short[] outputWeights;
+    private final int outputBias;
+
+    /**
+     * Create a network from its weights
+     * @param hiddenSize The number of hidden neurons per view
+     * @param inputWeights {@link #INPUTS} columns of hiddenSize weights
+     * @param hiddenBiases hiddenSize biases
+     * @param outputWeights hiddenSize weights for the view of the player to move, then hiddenSize for the other view
+     * @param outputBias The output bias, scaled by QA * QB
+     */
+    public NnueNetwork(int hiddenSize, short[] inputWeights, short[] hiddenBiases, short[] outputWeights, int outputBias) {
+        if (hiddenSize < 1 || inputWeights.length != INPUTS * hiddenSize || hiddenBiases.length != hiddenSize
+                || outputWeights.length != 2 * hiddenSize) {
+            throw new IllegalArgumentException("Weights do not match a hidden layer of " + hiddenSize);
+        }
+        this.hiddenSize = hiddenSize;
+        this.inputWeights = inputWeights;
+        this.hiddenBiases = hiddenBiases;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+    }
+
+    /**
+     * Read a network file
+     * @param file The file
+     * @return the network
+     * @throws IOException if the file can not be read or is not a network
+     */
+    public static NnueNetwork load(Path file) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC || in.getShort() != VERSION) {
+            throw new IOException("Not a network file: " + file);
+        }
+        int hiddenSize = in.getShort() & 0xFFFF;
+        int outputBias = in.getInt();
+        in.position(HEADER_SIZE);
+        if (hiddenSize == 0 || in.remaining() != 2L * (INPUTS + 3) * hiddenSize) {
+            throw new IOException("Truncated network file: " + file);
+        }
+        short[] inputWeights = new short[INPUTS * hiddenSize];
+        short[] hiddenBiases = new short[hiddenSize];
+        short[] outputWeights = new short[2 * hiddenSize];
+        in.asShortBuffer().get(inputWeights).get(hiddenBiases).get(outputWeights);
+        return new NnueNetwork(hiddenSize, inputWeights, hiddenBiases, outputWeights, outputBias);
+    }
+
+    /**
+     * Write the network in the format read by {@link #load(Path)}
+     * @param file The file to write
+     * @throws IOException if the file can not be written
+     */
+    public void write(Path file) throws IOException {
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            data.writeInt(MAGIC);
+            data.writeShort(VERSION);
+            data.writeShort(hiddenSize);
+            data.writeInt(outputBias);
+            data.writeInt(0);
+            for (short[] values : new short[][]{inputWeights, hiddenBiases, outputWeights}) {
+                for (short value : values) {
+                    data.writeShort(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build a network that counts material like {@link chess.engine.MaterialEvaluator}, to within
+     * a centipawn per piece. Useful to check the plumbing before a trained network is available.
+     * @return the network
+     */
+    public static NnueNetwork material() {
+        // one neuron per colour and type of piece, counting 25 per piece; at most 8 pieces of a kind stay under QA
+        int hiddenSize = 2 * PieceType.COUNT;
+        int[] values = {0, 900, 500, 300, 300, 100};
+        short[] inputWeights = new short[INPUTS * hiddenSize];
+        short[] outputWeights = new short[2 * hiddenSize];
+        for (int code = 0; code < 2 * PieceType.COUNT; code++) {
+            for (int square = 0; square < 64; square++) {
+                inputWeights[(code * 64 + square) * hiddenSize + code] = 25;
+            }
+            // both views count every piece, so each gives half its value
+            int value = values[code % PieceType.COUNT];
+            short weight = (short) Math.round(value / 2.0 * QA * QB / (25.0 * SCALE));
+            // in its own view a player owns codes 0-5, so those neurons count for the player to move in the first view
+            outputWeights[code] = (short) (code < PieceType.COUNT ? weight : -weight);
+            outputWeights[hiddenSize + code] = (short) (code < PieceType.COUNT ? -weight : weight);
+        }
+        return new NnueNetwork(hiddenSize, inputWeights, new short[hiddenSize], outputWeights, 0);
+    }
+
+    /**
+     * The input of a piece in one view
+     * @param piece The piece
+     * @param square The square of the piece, y * 8 + x
+     * @param black true for the view of black, false for white
+     * @return the input index, 0 to {@link #INPUTS} - 1
+     */
+    static int input(Piece piece, int square, boolean black) {
+        int code = piece.getCode();
+        if (black) {
+            code = code < PieceType.COUNT ? code + PieceType.COUNT : code - PieceType.COUNT;
+            square ^= 56;
+        }
+        return code * 64 + square;
+    }
+
+    /**
+     * @return the number of hidden neurons per view
+     */
+    public int getHiddenSize() {
+        return hiddenSize;
+    }
+
+    short[] getInputWeights() {
+        return inputWeights;
+    }
+
+    short[] getHiddenBiases() {
+        return hiddenBiases;
+    }
+
+    short[] getOutputWeights() {
+        return outputWeights;
+    }
+
+    int getOutputBias() {
+        return outputBias;
+    }
+
+    @Override
+    public String toString() {
+        return "768x2 -> " + hiddenSize + "x2 -> 1, " + NnueKernels.INSTANCE.describe() + " kernels";
+    }
+
+    /**
+     * Write the material network to a file, or describe a network file
+     * @param args -material &lt;file&gt; | &lt;file&gt;
+     * @throws IOException if the file can not be read or written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 2 && args[0].equals("-material")) {
+            material().write(Paths.get(args[1]));
+        } else if (args.length == 1) {
+            System.out.println(load(Paths.get(args[0])));
+        } else {
+            System.out.println("Usage: [-material] <file>");
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package chess.nnue;
+
+/**
+ * Plain loops, used when the vector API is not available.
+ */
+final class ScalarKernels extends NnueKernels {
+
+    @Override
+    void add(short[] accumulator, int offset, short[] weights, int weightOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            accumulator[offset + i] += weights[weightOffset + i];
+        }
+    }
+
+    @Override
+    void subtract(short[] accumulator, int offset, short[] weights, int weightOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            accumulator[offset + i] -= weights[weightOffset + i];
+        }
+    }
+
+    @Override
+    int clippedDot(short[] accumulator, int offset, short[] weights, int weightOffset, int length, short max) {
+        int sum = 0;
+        for (int i = 0; i < length; i++) {
+            int value = Math.max(0, Math.min(max, accumulator[offset + i]));
+            sum += value * weights[weightOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    String describe() {
+        return "scalar";
+    }
+}
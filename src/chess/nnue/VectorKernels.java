@@ -0,0 +1,70 @@
+package chess.nnue;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD loops on the preferred vector size of the CPU. Only loaded when the
+ * jdk.incubator.vector module is present; lengths that are not a multiple of the vector size
+ * finish with scalar code.
+ */
+final class VectorKernels extends NnueKernels {
+
+    private static final VectorSpecies<Short> SHORTS = ShortVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    void add(short[] accumulator, int offset, short[] weights, int weightOffset, int length) {
+        int i = 0;
+        for (int end = SHORTS.loopBound(length); i < end; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, offset + i)
+                    .add(ShortVector.fromArray(SHORTS, weights, weightOffset + i))
+                    .intoArray(accumulator, offset + i);
+        }
+        for (; i < length; i++) {
+            accumulator[offset + i] += weights[weightOffset + i];
+        }
+    }
+
+    @Override
+    void subtract(short[] accumulator, int offset, short[] weights, int weightOffset, int length) {
+        int i = 0;
+        for (int end = SHORTS.loopBound(length); i < end; i += SHORTS.length()) {
+            ShortVector.fromArray(SHORTS, accumulator, offset + i)
+                    .sub(ShortVector.fromArray(SHORTS, weights, weightOffset + i))
+                    .intoArray(accumulator, offset + i);
+        }
+        for (; i < length; i++) {
+            accumulator[offset + i] -= weights[weightOffset + i];
+        }
+    }
+
+    @Override
+    int clippedDot(short[] accumulator, int offset, short[] weights, int weightOffset, int length, short max) {
+        IntVector sum = IntVector.zero(INTS);
+        int i = 0;
+        for (int end = SHORTS.loopBound(length); i < end; i += SHORTS.length()) {
+            ShortVector value = ShortVector.fromArray(SHORTS, accumulator, offset + i).max((short) 0).min(max);
+            ShortVector weight = ShortVector.fromArray(SHORTS, weights, weightOffset + i);
+            // widen to ints before multiplying; a product does not fit in 16 bits
+            for (int part = 0; part < 2; part++) {
+                IntVector v = (IntVector) value.convertShape(VectorOperators.S2I, INTS, part);
+                IntVector w = (IntVector) weight.convertShape(VectorOperators.S2I, INTS, part);
+                sum = sum.add(v.mul(w));
+            }
+        }
+        int result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            int value = Math.max(0, Math.min(max, accumulator[offset + i]));
+            result += value * weights[weightOffset + i];
+        }
+        return result;
+    }
+
+    @Override
+    String describe() {
+        return "vector, " + SHORTS.length() + " x 16 bits";
+    }
+}
@@ -0,0 +1,128 @@
+package chess.perft;
+
+import chess.Fen;
+import chess.GameState;
+import chess.Position;
+import chess.board.BoardType;
+import chess.engine.Move;
+import chess.pieces.Piece;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth, to validate move generation.
+ */
+public final class Perft {
+
+    private Perft() {
+    }
+
+    /**
+     * Count the positions reachable in exactly the given number of plies
+     * @param state The position; it is restored before returning
+     * @param depth The depth in plies
+     * @return the number of leaf positions
+     */
+    public static long perft(GameState state, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        long nodes = 0;
+        for (Map.Entry<Position, Set<Position>> entry : state.getLegalMoves().entrySet()) {
+            if (depth == 1) {
+                nodes += entry.getValue().size();
+                continue;
+            }
+            for (Position end : entry.getValue()) {
+                Piece captured = state.makeMove(entry.getKey(), end);
+                nodes += perft(state, depth - 1);
+                state.unmakeMove(entry.getKey(), end, captured);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Perft split by root move
+     * @param state The position; it is restored before returning
+     * @param depth The depth in plies, at least 1
+     * @return the leaf count below every root move
+     */
+    public static Map<Move, Long> divide(GameState state, int depth) {
+        Map<Move, Long> result = new LinkedHashMap<>();
+        for (Map.Entry<Position, Set<Position>> entry : state.getLegalMoves().entrySet()) {
+            for (Position end : entry.getValue()) {
+                Piece captured = state.makeMove(entry.getKey(), end);
+                result.put(new Move(entry.getKey(), end), perft(state, depth - 1));
+                state.unmakeMove(entry.getKey(), end, captured);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Run perft on every board representation and compare the counts root move by root move
+     * @param fen The position
+     * @param depth The depth in plies, at least 1
+     * @return a description of the first difference, or null if every board agrees
+     */
+    public static String crossCheck(String fen, int depth) {
+        Map<Move, Long> reference = null;
+        for (BoardType type : BoardType.values()) {
+            GameState state = new GameState(type);
+            Fen.parse(fen, state);
+            long start = System.nanoTime();
+            Map<Move, Long> counts = divide(state, depth);
+            long total = counts.values().stream().mapToLong(Long::longValue).sum();
+            System.out.println(type + ": " + total + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            if (reference == null) {
+                reference = counts;
+            } else if (!reference.equals(counts)) {
+                for (Map.Entry<Move, Long> entry : reference.entrySet()) {
+                    if (!entry.getValue().equals(counts.get(entry.getKey()))) {
+                        return type + " differs after " + entry.getKey() + ": " + counts.get(entry.getKey()) + " instead of " + entry.getValue();
+                    }
+                }
+                return type + " has extra root moves: " + counts.keySet();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Main driver
+     * @param args optionally "-check" to compare every board representation, then the depth,
+     *             optionally followed by a FEN (default: the starting position)
+     */
+    public static void main(String[] args) {
+        boolean check = args.length > 0 && args[0].equals("-check");
+        if (check) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        if (args.length == 0) {
+            System.out.println("Usage: Perft [-check] <depth> [fen]");
+            return;
+        }
+        int depth = Integer.parseInt(args[0]);
+        String fen = args.length > 1 ? String.join(" ", Arrays.copyOfRange(args, 1, args.length)) : Fen.START;
+        if (check) {
+            String difference = crossCheck(fen, depth);
+            System.out.println(difference == null ? "All boards agree" : difference);
+            if (difference != null) {
+                System.exit(1);
+            }
+            return;
+        }
+        GameState state = Fen.parse(fen);
+        long start = System.nanoTime();
+        long total = 0;
+        for (Map.Entry<Move, Long> entry : divide(state, depth).entrySet()) {
+            System.out.println(entry.getKey() + ": " + entry.getValue());
+            total += entry.getValue();
+        }
+        System.out.println("Nodes: " + total + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,361 @@
+package chess.perft;
+
+import chess.Fen;
+import chess.GameState;
+import chess.Position;
+import chess.codec.PositionCodec;
+import chess.pieces.Piece;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Splits perft jobs into one work unit per root move and hands them to {@link PerftWorker}s
+ * connected over TCP. A unit in flight on a worker that disconnects or times out goes back to the
+ * queue and is counted by another worker, so a job finishes as long as one worker is left.
+ * A job fails instead of waiting forever when one of its units has failed on
+ * {@link #MAX_ATTEMPTS} workers, or when no worker has been connected for {@link #WORKER_WAIT_MILLIS}.
+ */
+public class PerftCoordinator implements AutoCloseable {
+
+    /** Number of workers a unit may fail on before its job fails */
+    static final int MAX_ATTEMPTS = 3;
+
+    /** How long a job waits with no worker connected before it fails */
+    static final long WORKER_WAIT_MILLIS = 30_000;
+
+    private final ServerSocket server;
+    private final int readTimeoutMillis;
+    private final long workerWaitMillis;
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private final BlockingQueue<Unit> pending = new LinkedBlockingQueue<>();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final AtomicInteger workers = new AtomicInteger();
+    private final AtomicInteger requeued = new AtomicInteger();
+    private long nextUnit;
+
+    /** A root move of one position of a job */
+    private static final class Unit {
+        final long id;
+        final byte[] record;
+        final int depth;
+        final int position;
+        final Job job;
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicInteger failures = new AtomicInteger();
+
+        Unit(long id, byte[] record, int depth, int position, Job job) {
+            this.id = id;
+            this.record = record;
+            this.depth = depth;
+            this.position = position;
+            this.job = job;
+        }
+    }
+
+    /** The totals of one call to {@link #perft(List, int)} */
+    private static final class Job {
+        final AtomicLongArray totals;
+        final CountDownLatch remaining;
+        /** Why the job failed, or null */
+        volatile String failure;
+
+        Job(int positions, int units) {
+            totals = new AtomicLongArray(positions);
+            remaining = new CountDownLatch(units);
+        }
+    }
+
+    /**
+     * Start listening for workers
+     * @param port The port to listen on; 0 for any free port
+     * @param readTimeoutMillis How long a worker may take for one unit before it is dropped; 0 for no limit
+     * @throws IOException if the port can not be opened
+     */
+    public PerftCoordinator(int port, int readTimeoutMillis) throws IOException {
+        this(port, readTimeoutMillis, WORKER_WAIT_MILLIS);
+    }
+
+    /**
+     * Start listening for workers
+     * @param port The port to listen on; 0 for any free port
+     * @param readTimeoutMillis How long a worker may take for one unit before it is dropped; 0 for no limit
+     * @param workerWaitMillis How long a job waits with no worker connected before it fails
+     * @throws IOException if the port can not be opened
+     */
+    PerftCoordinator(int port, int readTimeoutMillis, long workerWaitMillis) throws IOException {
+        this.server = new ServerSocket(port);
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.workerWaitMillis = workerWaitMillis;
+        threads.execute(this::acceptWorkers);
+    }
+
+    /**
+     * @return the port workers connect to
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return the number of currently connected worker connections
+     */
+    public int getWorkerCount() {
+        return workers.get();
+    }
+
+    /**
+     * @return the number of units handed out again after their worker failed
+     */
+    public int getRequeuedCount() {
+        return requeued.get();
+    }
+
+    private void acceptWorkers() {
+        while (!closed.get()) {
+            try {
+                Socket socket = server.accept();
+                threads.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (!closed.get()) {
+                    System.err.println("Failed to accept worker: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Feed units to one worker connection until it fails or the coordinator is closed
+     */
+    private void serve(Socket socket) {
+        workers.incrementAndGet();
+        Unit unit = null;
+        try (Socket s = socket;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()))) {
+            s.setTcpNoDelay(true);
+            s.setKeepAlive(true);
+            s.setSoTimeout(readTimeoutMillis);
+            while (!closed.get()) {
+                unit = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (unit == null || unit.done.get()) {
+                    unit = null;
+                    continue;
+                }
+                out.writeByte(PerftProtocol.WORK);
+                out.writeLong(unit.id);
+                out.write(unit.record);
+                out.writeByte(unit.depth);
+                out.flush();
+                if (in.readLong() != unit.id) {
+                    throw new IOException("Worker answered for the wrong unit");
+                }
+                long nodes = in.readLong();
+                if (unit.done.compareAndSet(false, true)) {
+                    unit.job.totals.addAndGet(unit.position, nodes);
+                    unit.job.remaining.countDown();
+                }
+                unit = null;
+            }
+            out.writeByte(PerftProtocol.DONE);
+            out.flush();
+        } catch (IOException e) {
+            if (unit != null && !unit.done.get()) {
+                if (unit.failures.incrementAndGet() >= MAX_ATTEMPTS) {
+                    unit.job.failure = "Unit " + unit.id + " failed on " + MAX_ATTEMPTS + " workers, last: " + e;
+                } else {
+                    requeued.incrementAndGet();
+                    pending.add(unit);
+                }
+            }
+        } catch (InterruptedException e) {
+            if (unit != null) {
+                pending.add(unit);
+            }
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Count the leaf nodes below several positions, distributing one unit per root move
+     * @param positions The positions
+     * @param depth The depth in plies
+     * @return the leaf count of every position
+     * @throws IOException if a unit failed on too many workers or no worker is left
+     * @throws InterruptedException if interrupted while waiting for the workers
+     */
+    public synchronized long[] perft(List<GameState> positions, int depth) throws IOException, InterruptedException {
+        long[] local = new long[positions.size()];
+        List<byte[]> records = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int p = 0; p < positions.size(); p++) {
+            GameState state = new GameState(positions.get(p));
+            if (depth <= 1) {
+                local[p] = Perft.perft(state, depth);
+                continue;
+            }
+            for (Map.Entry<Position, Set<Position>> entry : state.getLegalMoves().entrySet()) {
+                for (Position end : entry.getValue()) {
+                    Piece captured = state.makeMove(entry.getKey(), end);
+                    records.add(PositionCodec.encode(state));
+                    owners.add(p);
+                    state.unmakeMove(entry.getKey(), end, captured);
+                }
+            }
+        }
+        Job job = new Job(positions.size(), records.size());
+        for (int u = 0; u < records.size(); u++) {
+            pending.add(new Unit(nextUnit++, records.get(u), depth - 1, owners.get(u), job));
+        }
+        long lastWorkerSeen = System.nanoTime();
+        while (!job.remaining.await(100, TimeUnit.MILLISECONDS)) {
+            if (workers.get() > 0) {
+                lastWorkerSeen = System.nanoTime();
+            } else if (System.nanoTime() - lastWorkerSeen > TimeUnit.MILLISECONDS.toNanos(workerWaitMillis)) {
+                job.failure = "No worker connected for " + workerWaitMillis + " ms";
+            }
+            if (job.failure != null) {
+                pending.removeIf(unit -> unit.job == job);
+                throw new IOException(job.failure);
+            }
+        }
+
+        long[] totals = new long[positions.size()];
+        for (int p = 0; p < totals.length; p++) {
+            totals[p] = local[p] + job.totals.get(p);
+        }
+        return totals;
+    }
+
+    /**
+     * Stop listening and tell idle workers to disconnect
+     * @throws IOException if the server socket can not be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closed.set(true);
+        server.close();
+        threads.shutdown();
+        try {
+            threads.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Main driver
+     * @param args [-check] [-port p] [-spawn n] [-timeout ms] &lt;depth&gt; [-file &lt;fen file&gt;] [fen];
+     *             with -check the totals are compared with a single process {@link Perft} run, the
+     *             process exits with status 1 if they differ, and two workers are spawned by default
+     * @throws Exception if the job fails
+     */
+    public static void main(String[] args) throws Exception {
+        boolean check = args.length > 0 && args[0].equals("-check");
+        int port = 0;
+        int spawn = check ? 2 : 0;
+        int timeout = 0;
+        int i = check ? 1 : 0;
+        for (; i < args.length && args[i].startsWith("-") && !args[i].equals("-file"); i += 2) {
+            switch (args[i]) {
+                case "-port":
+                    port = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-spawn":
+                    spawn = Integer.parseInt(args[i + 1]);
+                    break;
+                case "-timeout":
+                    timeout = Integer.parseInt(args[i + 1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (i >= args.length) {
+            System.out.println("Usage: PerftCoordinator [-check] [-port p] [-spawn n] [-timeout ms] <depth> [-file <fen file>] [fen]");
+            return;
+        }
+        int depth = Integer.parseInt(args[i++]);
+        List<String> fens = new ArrayList<>();
+        if (i + 1 < args.length && args[i].equals("-file")) {
+            for (String line : Files.readAllLines(Paths.get(args[i + 1]))) {
+                if (!line.trim().isEmpty() && !line.startsWith("#")) {
+                    fens.add(line);
+                }
+            }
+        } else {
+            fens.add(i < args.length ? String.join(" ", Arrays.copyOfRange(args, i, args.length)) : Fen.START);
+        }
+        List<GameState> positions = new ArrayList<>();
+        for (String fen : fens) {
+            positions.add(Fen.parse(fen));
+        }
+
+        long[] totals;
+        List<Process> processes = new ArrayList<>();
+        try (PerftCoordinator coordinator = new PerftCoordinator(port, timeout)) {
+            System.out.println("Listening for workers on port " + coordinator.getPort());
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            for (int w = 0; w < spawn; w++) {
+                processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        PerftWorker.class.getName(), "localhost", String.valueOf(coordinator.getPort()), "1")
+                        .inheritIO()
+                        .start());
+            }
+
+            long start = System.nanoTime();
+            totals = coordinator.perft(positions, depth);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            long sum = 0;
+            for (int p = 0; p < totals.length; p++) {
+                System.out.println(totals[p] + "\t" + fens.get(p));
+                sum += totals[p];
+            }
+            System.out.println("Nodes: " + sum + " in " + millis + " ms, " + coordinator.getRequeuedCount() + " unit(s) requeued");
+        } finally {
+            // closing the coordinator told the workers to stop
+            for (Process process : processes) {
+                process.waitFor(5, TimeUnit.SECONDS);
+                process.destroy();
+            }
+        }
+
+        if (check) {
+            int differences = 0;
+            for (int p = 0; p < totals.length; p++) {
+                long expected = Perft.perft(positions.get(p), depth);
+                if (expected != totals[p]) {
+                    System.out.println("Distributed total " + totals[p] + " instead of " + expected + " for " + fens.get(p));
+                    differences++;
+                }
+            }
+            System.out.println(differences == 0 ? "Distributed and single process totals agree" : differences + " total(s) differ");
+            if (differences != 0) {
+                System.exit(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package chess.perft;
+
+import chess.codec.PositionCodec;
+
+/**
+ * Wire format between {@link PerftCoordinator} and {@link PerftWorker}, over a plain TCP stream.
+ *
+ * Coordinator to worker: a {@link #WORK} byte, the unit id (long), the position as a
+ * {@link PositionCodec} record and the remaining depth (byte); or a {@link #DONE} byte to let the
+ * worker disconnect. Worker to coordinator: the unit id (long) and the leaf count (long).
+ */
+final class PerftProtocol {
+
+    /** A work unit follows */
+    static final int WORK = 1;
+
+    /** No more work; close the connection */
+    static final int DONE = 0;
+
+    private PerftProtocol() {
+    }
+}
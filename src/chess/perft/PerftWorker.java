@@ -0,0 +1,102 @@
+package chess.perft;
+
+import chess.GameState;
+import chess.codec.PositionCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+
+/**
+ * Connects to a {@link PerftCoordinator} and counts the work units it is sent until told to stop.
+ * Every connection handles one unit at a time; a worker opens one connection per thread.
+ */
+public final class PerftWorker {
+
+    /** How long to keep retrying while the coordinator is not listening yet */
+    private static final long CONNECT_TIMEOUT_MILLIS = 30_000;
+
+    private PerftWorker() {
+    }
+
+    /**
+     * Serve one connection until the coordinator is done
+     * @param host The coordinator host
+     * @param port The coordinator port
+     * @return the number of units counted
+     * @throws IOException if the connection fails
+     * @throws InterruptedException if interrupted while waiting for the coordinator
+     */
+    public static int serve(String host, int port) throws IOException, InterruptedException {
+        int units = 0;
+        try (Socket socket = connect(host, port);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+            byte[] record = new byte[PositionCodec.RECORD_SIZE];
+            GameState state = new GameState();
+            while (in.readByte() == PerftProtocol.WORK) {
+                long unit = in.readLong();
+                in.readFully(record);
+                int depth = in.readByte();
+                PositionCodec.decode(ByteBuffer.wrap(record), 0, state);
+                long nodes = Perft.perft(state, depth);
+                out.writeLong(unit);
+                out.writeLong(nodes);
+                out.flush();
+                units++;
+            }
+        }
+        return units;
+    }
+
+    private static Socket connect(String host, int port) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                return new Socket(host, port);
+            } catch (ConnectException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw e;
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Main driver
+     * @param args host, port and optionally the number of connections (default: one per core)
+     * @throws Exception if a connection fails
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Usage: PerftWorker <host> <port> [connections]");
+            return;
+        }
+        String host = args[0];
+        int port = Integer.parseInt(args[1]);
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        Thread[] threads = new Thread[connections];
+        for (int i = 0; i < connections; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    serve(host, port);
+                } catch (IOException e) {
+                    System.err.println("Worker connection failed: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "perft-worker-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -8,11 +8,6 @@ import chess.Player;
 public class Bishop extends Piece {
 	
     public Bishop(Player owner) {
-        super(owner);
-    }
-
-    @Override
-    protected char getIdentifyingCharacter() {
-        return 'b';
+        super(owner, PieceType.BISHOP);
     }
 }
@@ -8,11 +8,6 @@ import chess.Player;
 public class King extends Piece {
 	
     public King(Player owner) {
-        super(owner);
-    }
-
-    @Override
-    protected char getIdentifyingCharacter() {
-        return 'k';
+        super(owner, PieceType.KING);
     }
 }
@@ -8,11 +8,6 @@ import chess.Player;
 public class Knight extends Piece {
 	
     public Knight(Player owner) {
-        super(owner);
-    }
-
-    @Override
-    protected char getIdentifyingCharacter() {
-        return 'n';
+        super(owner, PieceType.KNIGHT);
     }
 }
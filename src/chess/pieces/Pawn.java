@@ -8,11 +8,6 @@ import chess.Player;
 public class Pawn extends Piece {
 	
     public Pawn(Player owner) {
-        super(owner);
-    }
-
-    @Override
-    protected char getIdentifyingCharacter() {
-        return 'p';
+        super(owner, PieceType.PAWN);
     }
 }
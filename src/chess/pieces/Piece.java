@@ -11,9 +11,21 @@ public abstract class Piece {
 	/** The player that owns this piece */
     private final Player owner;
 
+    /** The kind of piece */
+    private final PieceType type;
+
+    /** The type code, plus {@link PieceType#COUNT} for black pieces */
+    private final int code;
+
+    /** The properly cased identifier */
+    private final char identifier;
+
     /** Protected constructor to guard against creation */
-    protected Piece(Player owner) {
+    protected Piece(Player owner, PieceType type) {
         this.owner = owner;
+        this.type = type;
+        this.code = owner == Player.White ? type.ordinal() : type.ordinal() + PieceType.COUNT;
+        this.identifier = owner == Player.White ? type.getLetter() : Character.toUpperCase(type.getLetter());
     }
 
     /**
@@ -21,12 +33,7 @@ public abstract class Piece {
      * @return The properly cased piece identifier
      */
     public char getIdentifier() {
-        char id = getIdentifyingCharacter();
-        if (owner.equals(Player.White)) {
-            return Character.toLowerCase(id);
-        } else {
-            return Character.toUpperCase(id);
-        }
+        return identifier;
     }
 
     public Player getOwner() {
@@ -34,10 +41,26 @@ public abstract class Piece {
     }
 
     /**
-     * Each piece must know how to identify itself
+     * @return the kind of piece
+     */
+    public PieceType getType() {
+        return type;
+    }
+
+    /**
+     * @return the piece code: the type code for white pieces, the type code plus {@link PieceType#COUNT} for black ones
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * The identifier of the kind of piece
      * @return The identifier for this piece
      */
-    protected abstract char getIdentifyingCharacter();
+    protected char getIdentifyingCharacter() {
+        return type.getLetter();
+    }
 
     @Override
     /**
@@ -0,0 +1,85 @@
+package chess.pieces;
+
+/**
+ * The kinds of pieces, in code order, with the steps each one moves by.
+ *
+ * The ordinal is the type code used throughout the engine (hashing, encoding, evaluation);
+ * a piece's code adds {@link #COUNT} for black pieces. Move generation walks the offsets of the
+ * type instead of testing the class of the piece.
+ */
+public enum PieceType {
+    KING('k', false, new int[][]{{-1, 1}, {0, 1}, {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}}),
+    QUEEN('q', true, new int[][]{{-1, 1}, {0, 1}, {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}}),
+    ROOK('r', true, new int[][]{{0, 1}, {0, -1}, {-1, 0}, {1, 0}}),
+    BISHOP('b', true, new int[][]{{-1, 1}, {1, 1}, {1, -1}, {-1, -1}}),
+    KNIGHT('n', false, new int[][]{{1, 2}, {-1, 2}, {1, -2}, {-1, -2}, {-2, 1}, {-2, -1}, {2, 1}, {2, -1}}),
+    /** Pawns move and capture differently and have no offsets; see GameState */
+    PAWN('p', false, new int[0][]);
+
+    /** Number of piece types; the code of a black piece is its type code plus this */
+    public static final int COUNT = 6;
+
+    private static final PieceType[] TYPES = values();
+
+    private final char letter;
+    private final boolean sliding;
+    private final int[] dx;
+    private final int[] dy;
+
+    PieceType(char letter, boolean sliding, int[][] offsets) {
+        this.letter = letter;
+        this.sliding = sliding;
+        this.dx = new int[offsets.length];
+        this.dy = new int[offsets.length];
+        for (int i = 0; i < offsets.length; i++) {
+            dx[i] = offsets[i][0];
+            dy[i] = offsets[i][1];
+        }
+    }
+
+    /**
+     * Fetch a type by code
+     * @param code The type code, 0 to 5
+     * @return the type
+     */
+    public static PieceType of(int code) {
+        return TYPES[code];
+    }
+
+    /**
+     * @return the lower case letter of the type
+     */
+    public char getLetter() {
+        return letter;
+    }
+
+    /**
+     * @return true if the piece moves any number of steps along its offsets, false for a single step
+     */
+    public boolean isSliding() {
+        return sliding;
+    }
+
+    /**
+     * @return the number of offsets
+     */
+    public int getOffsetCount() {
+        return dx.length;
+    }
+
+    /**
+     * @param offset The offset index
+     * @return the column step of the offset
+     */
+    public int getDx(int offset) {
+        return dx[offset];
+    }
+
+    /**
+     * @param offset The offset index
+     * @return the row step of the offset
+     */
+    public int getDy(int offset) {
+        return dy[offset];
+    }
+}
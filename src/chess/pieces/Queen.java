@@ -8,11 +8,6 @@ import chess.Player;
 public class Queen extends Piece {
 	
     public Queen(Player owner) {
-        super(owner);
-    }
-
-    @Override
-    protected char getIdentifyingCharacter() {
-        return 'q';
+        super(owner, PieceType.QUEEN);
     }
 }
@@ -8,11 +8,6 @@ import chess.Player;
 public class Rook extends Piece {
 
     public Rook(Player owner) {
-        super(owner);
-    }
-
-    @Override
-    protected char getIdentifyingCharacter() {
-        return 'r';
+        super(owner, PieceType.ROOK);
     }
 }
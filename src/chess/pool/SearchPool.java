@@ -0,0 +1,452 @@
+package chess.pool;
+
+import chess.GameState;
+import chess.engine.Evaluator;
+import chess.engine.Search;
+import chess.metrics.LatencyHistogram;
+import chess.metrics.LatencySnapshot;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A fixed set of search threads shared by every game session of the JVM.
+ *
+ * Sessions belong to a priority class and carry a budget: the deepest search they may ask for
+ * and the time a search may take. A session runs one search at a time; sessions with searches
+ * waiting take turns within their class, so one busy session can not hold every worker.
+ * Interactive sessions always go before batch sessions, and batch searches never take the last
+ * worker, so a move can start at once even while every other worker is deep in an analysis.
+ *
+ * Searches deepen one ply at a time. Between two depths a batch search checks whether an
+ * interactive search is waiting with no worker free; if so it goes back to the front of its
+ * queue, keeping its best move and depth, and continues later from the next depth. A search stops
+ * deepening once half its time budget is spent, since the next depth would most likely not
+ * finish in the other half, and its result is the best move of the deepest finished depth.
+ */
+public class SearchPool implements SearchPoolMXBean, AutoCloseable {
+
+    /** The classes of sessions, most urgent first */
+    public enum Priority {
+        /** A player is waiting for the move */
+        INTERACTIVE,
+        /** Analysis that can wait */
+        BATCH
+    }
+
+    /**
+     * A client of the pool: a game or an analysis job
+     */
+    public final class Session {
+        private final String name;
+        private final Priority priority;
+        private final Evaluator evaluator;
+        private final int maxDepth;
+        private final long maxNanos;
+
+        /** Searches waiting; guarded by the pool lock */
+        private final ArrayDeque<Task> tasks = new ArrayDeque<>();
+
+        /** Whether a search of the session is running; guarded by the pool lock */
+        private boolean running;
+
+        private Session(String name, Priority priority, Evaluator evaluator, int maxDepth, long maxNanos) {
+            this.name = name;
+            this.priority = priority;
+            this.evaluator = evaluator;
+            this.maxDepth = maxDepth;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * Queue a search of a position
+         * @param state The position; copied, so the game can go on
+         * @return the result, completed by a worker thread; cancelling it drops the search if it has not started
+         */
+        public CompletableFuture<Search.Result> search(GameState state) {
+            Task task = new Task(this, new GameState(state));
+            lock.lock();
+            try {
+                if (closed) {
+                    throw new IllegalStateException("The search pool is closed");
+                }
+                tasks.addLast(task);
+                if (!running && tasks.size() == 1) {
+                    ready[priority.ordinal()].addLast(this);
+                    work.signal();
+                }
+            } finally {
+                lock.unlock();
+            }
+            return task.result;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (" + priority + ")";
+        }
+    }
+
+    /** A search and how far it got */
+    private static final class Task {
+        final Session session;
+        final GameState state;
+        final Search search;
+        final CompletableFuture<Search.Result> result = new CompletableFuture<>();
+        final long submitted = System.nanoTime();
+        boolean started;
+        int depth;
+        long spentNanos;
+        Search.Result best;
+
+        Task(Session session, GameState state) {
+            this.session = session;
+            this.state = state;
+            this.search = new Search(session.evaluator);
+        }
+    }
+
+    private static final int CLASSES = Priority.values().length;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition work = lock.newCondition();
+
+    /** Sessions with a search waiting and none running, by class; guarded by the lock */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Session>[] ready = new ArrayDeque[CLASSES];
+
+    /** Searches running, by class; guarded by the lock */
+    private final int[] running = new int[CLASSES];
+
+    /** Most searches of each class running at once */
+    private final int[] limits = new int[CLASSES];
+
+    /** Workers waiting for a search; guarded by the lock */
+    private int idle;
+
+    /** Written under the lock; read without it by running searches between two depths */
+    private volatile boolean closed;
+
+    private final Thread[] workers;
+    private final LatencyHistogram[] queueWait = new LatencyHistogram[CLASSES];
+    private final LatencyHistogram[] searchTime = new LatencyHistogram[CLASSES];
+    private final LongAdder[] completed = new LongAdder[CLASSES];
+    private final LongAdder[] preemptions = new LongAdder[CLASSES];
+
+    /**
+     * Create a pool with one worker per core
+     */
+    public SearchPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a pool
+     * @param workers The number of search threads; with more than one, one is kept for interactive searches
+     */
+    public SearchPool(int workers) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("A search pool needs at least one worker");
+        }
+        for (int i = 0; i < CLASSES; i++) {
+            ready[i] = new ArrayDeque<>();
+            queueWait[i] = new LatencyHistogram();
+            searchTime[i] = new LatencyHistogram();
+            completed[i] = new LongAdder();
+            preemptions[i] = new LongAdder();
+        }
+        Arrays.fill(limits, workers);
+        limits[Priority.BATCH.ordinal()] = Math.max(1, workers - 1);
+        this.workers = new Thread[workers];
+        for (int i = 0; i < workers; i++) {
+            Thread worker = new Thread(this::work, "search-" + i);
+            worker.setDaemon(true);
+            this.workers[i] = worker;
+            worker.start();
+        }
+    }
+
+    /**
+     * Open a session
+     * @param name The name of the session, for logs
+     * @param priority The class of the session
+     * @param evaluator The evaluation of its searches
+     * @param maxDepth The deepest search, in plies
+     * @param maxMillis The time a search may take; 0 for no limit but the depth
+     * @return the session
+     */
+    public Session openSession(String name, Priority priority, Evaluator evaluator, int maxDepth, long maxMillis) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("Search depth must be at least 1");
+        }
+        long maxNanos = maxMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(maxMillis) : Long.MAX_VALUE;
+        return new Session(name, priority, evaluator, maxDepth, maxNanos);
+    }
+
+    /**
+     * Worker loop: take the most urgent search, run it until it finishes or yields
+     */
+    private void work() {
+        for (Task task = take(); task != null; task = take()) {
+            run(task);
+        }
+    }
+
+    /**
+     * Wait for a search
+     * @return the search, or null once the pool is closed
+     */
+    private Task take() {
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    return null;
+                }
+                for (int i = 0; i < CLASSES; i++) {
+                    Session session = running[i] < limits[i] ? ready[i].pollFirst() : null;
+                    if (session != null) {
+                        session.running = true;
+                        running[i]++;
+                        return session.tasks.pollFirst();
+                    }
+                }
+                idle++;
+                try {
+                    work.awaitUninterruptibly();
+                } finally {
+                    idle--;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run(Task task) {
+        Session session = task.session;
+        int priority = session.priority.ordinal();
+        if (task.result.isDone()) {
+            finish(task, false); // cancelled while waiting
+            return;
+        }
+        if (!task.started) {
+            task.started = true;
+            queueWait[priority].record(System.nanoTime() - task.submitted);
+        }
+        try {
+            while (!task.result.isDone() && task.depth < session.maxDepth) {
+                long start = System.nanoTime();
+                task.best = task.search.search(task.state, ++task.depth);
+                task.spentNanos += System.nanoTime() - start;
+                if (task.best.getBestMove() == null || task.spentNanos > session.maxNanos / 2 || closed) {
+                    break;
+                }
+                if (task.depth < session.maxDepth && mustYield(session.priority)) {
+                    preemptions[priority].increment();
+                    finish(task, true);
+                    return;
+                }
+            }
+            searchTime[priority].record(task.spentNanos);
+            completed[priority].increment();
+            task.result.complete(task.best);
+        } catch (RuntimeException e) {
+            task.result.completeExceptionally(e);
+        }
+        finish(task, false);
+    }
+
+    /**
+     * @param priority The class of the running search
+     * @return true if a more urgent search waits and no worker is free to take it
+     */
+    private boolean mustYield(Priority priority) {
+        lock.lock();
+        try {
+            if (idle > 0) {
+                return false;
+            }
+            for (int i = 0; i < priority.ordinal(); i++) {
+                if (!ready[i].isEmpty()) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hand the session of a search back to the scheduler
+     * @param task The search
+     * @param preempted true to queue the search again, ahead of the other sessions of its class
+     */
+    private void finish(Task task, boolean preempted) {
+        Session session = task.session;
+        lock.lock();
+        try {
+            session.running = false;
+            running[session.priority.ordinal()]--;
+            if (closed) {
+                // nobody is left to resume or start the searches of the session
+                if (preempted) {
+                    task.result.complete(task.best);
+                }
+                cancel(session);
+            } else if (preempted) {
+                session.tasks.addFirst(task);
+                ready[session.priority.ordinal()].addFirst(session);
+            } else if (!session.tasks.isEmpty()) {
+                ready[session.priority.ordinal()].addLast(session);
+            }
+            if (!ready[session.priority.ordinal()].isEmpty()) {
+                work.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the workers once their current search iteration is done. Running and preempted searches
+     * complete with the best move of their deepest finished depth; searches not started yet are cancelled.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (ArrayDeque<Session> sessions : ready) {
+                sessions.forEach(this::cancel);
+                sessions.clear();
+            }
+            work.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancel the searches a session has waiting; called with the lock held once the pool is closed
+     * @param session The session
+     */
+    private void cancel(Session session) {
+        session.tasks.forEach(task -> task.result.completeExceptionally(new CancellationException("Search pool closed")));
+        session.tasks.clear();
+    }
+
+    /**
+     * Publish the metrics over JMX
+     * @param name The name of the pool, for the "name" key of the object name
+     */
+    public void register(String name) {
+        String objectName = "chess:type=SearchPool,name=" + ObjectName.quote(name);
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(objectName));
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register " + objectName, e);
+        }
+    }
+
+    @Override
+    public int getWorkers() {
+        return workers.length;
+    }
+
+    @Override
+    public Map<String, Integer> getQueued() {
+        Map<String, Integer> result = new TreeMap<>();
+        lock.lock();
+        try {
+            for (Priority priority : Priority.values()) {
+                int queued = 0;
+                for (Session session : ready[priority.ordinal()]) {
+                    queued += session.tasks.size();
+                }
+                result.put(priority.name(), queued);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getQueueWait() {
+        return snapshots(queueWait);
+    }
+
+    @Override
+    public Map<String, LatencySnapshot> getSearchTime() {
+        return snapshots(searchTime);
+    }
+
+    @Override
+    public Map<String, Long> getCompleted() {
+        return sums(completed);
+    }
+
+    @Override
+    public Map<String, Long> getPreemptions() {
+        return sums(preemptions);
+    }
+
+    private static Map<String, LatencySnapshot> snapshots(LatencyHistogram[] histograms) {
+        Map<String, LatencySnapshot> result = new TreeMap<>();
+        for (Priority priority : Priority.values()) {
+            result.put(priority.name(), histograms[priority.ordinal()].snapshot());
+        }
+        return result;
+    }
+
+    private static Map<String, Long> sums(LongAdder[] counters) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Priority priority : Priority.values()) {
+            result.put(priority.name(), counters[priority.ordinal()].sum());
+        }
+        return result;
+    }
+
+    @Override
+    public void resetCounters() {
+        for (int i = 0; i < CLASSES; i++) {
+            queueWait[i].reset();
+            searchTime[i].reset();
+            completed[i].reset();
+            preemptions[i].reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Priority priority : Priority.values()) {
+            int i = priority.ordinal();
+            sb.append(priority).append(": ").append(completed[i].sum()).append(" searches, ")
+                    .append(preemptions[i].sum()).append(" preemptions, wait ").append(queueWait[i].snapshot())
+                    .append(", search ").append(searchTime[i].snapshot()).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package chess.pool;
+
+import chess.metrics.LatencySnapshot;
+
+import java.util.Map;
+
+/**
+ * Management interface of a {@link SearchPool}, registered as "chess:type=SearchPool,name=...".
+ * Maps are keyed by priority class.
+ */
+public interface SearchPoolMXBean {
+
+    /**
+     * @return the number of worker threads
+     */
+    int getWorkers();
+
+    /**
+     * @return the number of searches waiting for a worker, preempted ones included
+     */
+    Map<String, Integer> getQueued();
+
+    /**
+     * @return the time from submitting a search to a worker starting it
+     */
+    Map<String, LatencySnapshot> getQueueWait();
+
+    /**
+     * @return the time spent searching, over all iterations of a search
+     */
+    Map<String, LatencySnapshot> getSearchTime();
+
+    /**
+     * @return the number of searches finished
+     */
+    Map<String, Long> getCompleted();
+
+    /**
+     * @return the number of times a search gave up its worker to a more urgent one
+     */
+    Map<String, Long> getPreemptions();
+
+    /**
+     * Set the latencies and counters back to zero
+     */
+    void resetCounters();
+}
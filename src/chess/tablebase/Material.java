@@ -0,0 +1,156 @@
+package chess.tablebase;
+
+import chess.Player;
+
+/**
+ * Describes the set of pieces covered by one tablebase, e.g. "KQK" or "KRKN".
+ * The first 'K' starts the white pieces and the second 'K' starts the black pieces.
+ * Piece order in the spec is also the order of the squares in a table index.
+ */
+public final class Material {
+
+    /** Piece letters that may appear in a spec */
+    private static final String PIECE_LETTERS = "KQRBNP";
+
+    /** The spec this material was parsed from */
+    private final String spec;
+
+    /** Upper case piece letter of every piece, in index order */
+    private final char[] types;
+
+    /** Owner of every piece, in index order */
+    private final Player[] owners;
+
+    private Material(String spec, char[] types, Player[] owners) {
+        this.spec = spec;
+        this.types = types;
+        this.owners = owners;
+    }
+
+    /**
+     * Parse a material spec
+     * @param spec The material, i.e. "KQK", "KPK", "KBNK"
+     * @return the parsed material
+     * @throws IllegalArgumentException if the spec is not two kings plus at most two more pieces
+     */
+    public static Material parse(String spec) {
+        String upper = spec.toUpperCase();
+        if (upper.length() < 2 || upper.length() > 4 || upper.charAt(0) != 'K') {
+            throw new IllegalArgumentException("Material must start with a king and hold 2 to 4 pieces: " + spec);
+        }
+        int blackKing = upper.indexOf('K', 1);
+        if (blackKing < 0 || upper.indexOf('K', blackKing + 1) >= 0) {
+            throw new IllegalArgumentException("Material must hold exactly two kings: " + spec);
+        }
+
+        char[] types = new char[upper.length()];
+        Player[] owners = new Player[upper.length()];
+        // kings first, so that every table starts with the two king squares
+        types[0] = 'K';
+        owners[0] = Player.White;
+        types[1] = 'K';
+        owners[1] = Player.Black;
+        int next = 2;
+        for (int i = 1; i < upper.length(); i++) {
+            char type = upper.charAt(i);
+            if (PIECE_LETTERS.indexOf(type) < 0) {
+                throw new IllegalArgumentException("Unknown piece '" + type + "' in " + spec);
+            }
+            if (i == blackKing) {
+                continue;
+            }
+            types[next] = type;
+            owners[next] = i < blackKing ? Player.White : Player.Black;
+            next++;
+        }
+        return new Material(upper, types, owners);
+    }
+
+    /**
+     * Material left after capturing one piece
+     * @param captured The index of the captured piece; never a king
+     * @return the smaller material
+     */
+    Material without(int captured) {
+        StringBuilder white = new StringBuilder("K");
+        StringBuilder black = new StringBuilder("K");
+        for (int i = 2; i < types.length; i++) {
+            if (i != captured) {
+                (owners[i] == Player.White ? white : black).append(types[i]);
+            }
+        }
+        return parse(white.append(black).toString());
+    }
+
+    /**
+     * The same material with the colours swapped, i.e. "KQK" becomes "KKQ"
+     * @return the mirrored material
+     */
+    public Material mirror() {
+        StringBuilder white = new StringBuilder("K");
+        StringBuilder black = new StringBuilder("K");
+        for (int i = 2; i < types.length; i++) {
+            (owners[i] == Player.White ? black : white).append(types[i]);
+        }
+        return parse(white.append(black).toString());
+    }
+
+    /**
+     * Key that is equal for every spec describing the same pieces, regardless of their order
+     * @return the canonical key
+     */
+    public String key() {
+        StringBuilder white = new StringBuilder();
+        StringBuilder black = new StringBuilder();
+        for (int i = 2; i < types.length; i++) {
+            (owners[i] == Player.White ? white : black).append(types[i]);
+        }
+        return "K" + sortByValue(white) + "K" + sortByValue(black);
+    }
+
+    private static String sortByValue(StringBuilder pieces) {
+        StringBuilder sorted = new StringBuilder();
+        for (char letter : PIECE_LETTERS.toCharArray()) {
+            for (char c : pieces.toString().toCharArray()) {
+                if (c == letter) {
+                    sorted.append(c);
+                }
+            }
+        }
+        return sorted.toString();
+    }
+
+    /**
+     * @return the number of pieces, kings included
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * @return the number of entries in a table for this material: both sides to move times 64 squares per piece
+     */
+    public int entryCount() {
+        return 2 << (6 * types.length);
+    }
+
+    char getType(int piece) {
+        return types[piece];
+    }
+
+    Player getOwner(int piece) {
+        return owners[piece];
+    }
+
+    /**
+     * @return the spec this material was parsed from
+     */
+    public String getSpec() {
+        return spec;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
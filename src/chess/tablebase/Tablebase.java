@@ -0,0 +1,208 @@
+package chess.tablebase;
+
+import chess.GameState;
+import chess.Player;
+import chess.Position;
+import chess.pieces.Piece;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * A memory mapped endgame table for one material set.
+ *
+ * The file is a 16 byte header (magic, version, material spec) followed by one byte per position.
+ * A position is indexed by the side to move followed by the square (0-63, a1 = 0, h8 = 63) of
+ * every piece in the order of the material spec, 6 bits each. An entry holds:
+ * <ul>
+ *     <li>0 - draw</li>
+ *     <li>n &gt; 0 - the side to move mates in n plies</li>
+ *     <li>n &lt; 0 - the side to move is mated in -n - 1 plies</li>
+ *     <li>{@link #ILLEGAL} - the position can not occur</li>
+ * </ul>
+ */
+public final class Tablebase {
+
+    /** File extension of tablebase files */
+    public static final String EXTENSION = ".ctb";
+
+    /** Entry of a position that can not occur in a game */
+    public static final int ILLEGAL = Byte.MIN_VALUE;
+
+    /** Returned by {@link #probe(GameState)} when the table does not cover the position */
+    public static final int UNKNOWN = Integer.MIN_VALUE;
+
+    /** "CTB1" */
+    private static final int MAGIC = 0x43544231;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    /** The pieces covered by this table */
+    private final Material material;
+
+    /** The entries; absolute reads only, so the buffer can be shared by all threads */
+    private final MappedByteBuffer entries;
+
+    private Tablebase(Material material, MappedByteBuffer entries) {
+        this.material = material;
+        this.entries = entries;
+    }
+
+    /**
+     * Map a tablebase file into memory
+     * @param file The file written by {@link TablebaseGenerator}
+     * @return the table
+     * @throws IOException if the file can not be read or is not a tablebase
+     */
+    public static Tablebase open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getShort() != VERSION) {
+                throw new IOException("Not a tablebase file: " + file);
+            }
+            byte[] spec = new byte[header.getShort()];
+            header.get(spec);
+            Material material = Material.parse(new String(spec, StandardCharsets.US_ASCII));
+            if (channel.size() != HEADER_SIZE + (long) material.entryCount()) {
+                throw new IOException("Truncated tablebase file: " + file);
+            }
+            // the mapping stays valid after the channel is closed
+            return new Tablebase(material, channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, material.entryCount()));
+        }
+    }
+
+    /**
+     * Write a table in the format read by {@link #open(Path)}
+     * @param file The file to write
+     * @param material The material of the table
+     * @param entries One entry per index
+     * @throws IOException if the file can not be written
+     */
+    static void write(Path file, Material material, byte[] entries) throws IOException {
+        byte[] spec = material.getSpec().getBytes(StandardCharsets.US_ASCII);
+        try (OutputStream out = Files.newOutputStream(file);
+             DataOutputStream data = new DataOutputStream(out)) {
+            data.writeInt(MAGIC);
+            data.writeShort(VERSION);
+            data.writeShort(spec.length);
+            data.write(spec);
+            data.write(new byte[HEADER_SIZE - 8 - spec.length]);
+            data.write(entries);
+        }
+    }
+
+    /**
+     * Compute the index of a position
+     * @param sideToMove 0 for white, 1 for black
+     * @param squares The square of every piece, in material order
+     * @param count The number of pieces
+     * @return the index into the table
+     */
+    static int index(int sideToMove, int[] squares, int count) {
+        int index = sideToMove;
+        for (int i = 0; i < count; i++) {
+            index = (index << 6) | squares[i];
+        }
+        return index;
+    }
+
+    /**
+     * @return the pieces covered by this table
+     */
+    public Material getMaterial() {
+        return material;
+    }
+
+    /**
+     * Look up the raw entry at an index
+     * @param index The index of the position
+     * @return the entry
+     */
+    public int get(int index) {
+        return entries.get(index);
+    }
+
+    /**
+     * Look up a game position. Positions with the colours of this table swapped are found too.
+     * @param state The position to look up
+     * @return the entry for the side to move, or {@link #UNKNOWN} if the material does not match this table
+     */
+    public int probe(GameState state) {
+        int index = indexOf(state, false);
+        if (index < 0) {
+            index = indexOf(state, true);
+        }
+        return index < 0 ? UNKNOWN : get(index);
+    }
+
+    /**
+     * Map the pieces of a game onto the squares of this table
+     * @param state The position
+     * @param mirrored true to swap the colours and flip the board vertically
+     * @return the index or -1 if the pieces do not match
+     */
+    private int indexOf(GameState state, boolean mirrored) {
+        Map<Position, Piece> pieces = state.getPieces();
+        if (pieces.size() != material.size()) {
+            return -1;
+        }
+        int[] squares = new int[material.size()];
+        boolean[] taken = new boolean[material.size()];
+        for (Map.Entry<Position, Piece> entry : pieces.entrySet()) {
+            char type = Character.toUpperCase(entry.getValue().getIdentifier());
+            Player owner = entry.getValue().getOwner();
+            int x = entry.getKey().getX();
+            int y = entry.getKey().getY();
+            if (mirrored) {
+                owner = opponent(owner);
+                y = Position.MAX_AXIS - y;
+            }
+            int slot = 0;
+            while (slot < squares.length && (taken[slot] || material.getType(slot) != type || material.getOwner(slot) != owner)) {
+                slot++;
+            }
+            if (slot == squares.length) {
+                return -1;
+            }
+            taken[slot] = true;
+            squares[slot] = y * 8 + x;
+        }
+        Player toMove = mirrored ? opponent(state.getCurrentPlayer()) : state.getCurrentPlayer();
+        return index(toMove == Player.White ? 0 : 1, squares, squares.length);
+    }
+
+    private static Player opponent(Player player) {
+        return player == Player.White ? Player.Black : Player.White;
+    }
+
+    /**
+     * Human readable form of an entry
+     * @param value The entry, as returned by {@link #probe(GameState)}
+     * @return the description
+     */
+    public static String describe(int value) {
+        if (value == UNKNOWN) {
+            return "Not in tablebase";
+        } else if (value == ILLEGAL) {
+            return "Illegal position";
+        } else if (value == 0) {
+            return "Draw";
+        } else if (value > 0) {
+            return "Win, mate in " + (value + 1) / 2 + " move(s)";
+        } else if (value == -1) {
+            return "Loss, checkmated";
+        }
+        return "Loss, mated in " + (-value - 1) / 2 + " move(s)";
+    }
+}
@@ -0,0 +1,638 @@
+package chess.tablebase;
+
+import chess.Player;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * Builds endgame tables by retrograde analysis.
+ *
+ * Every position of a material set is first classified as illegal, mate, stalemate or unresolved.
+ * Then, ply by ply, only the predecessors of the positions resolved in the previous ply are
+ * re-examined: a position is won in n plies if a move reaches a position lost in n - 1 plies, and
+ * lost in n plies if every move reaches a position won in at most n - 1 plies. Captures lead into
+ * the tables of the smaller material sets, which are generated first. Whatever is left unresolved
+ * is a draw. The rules are those of {@link chess.GameState}: no castling, en passant or promotion.
+ */
+public class TablebaseGenerator {
+
+    /** Longest distance to mate that fits into an entry */
+    private static final int MAX_PLIES = 126;
+
+    private static final int[][] KING_OFFSETS = {{-1, 1}, {0, 1}, {1, 1}, {1, 0}, {1, -1}, {0, -1}, {-1, -1}, {-1, 0}};
+    private static final int[][] KNIGHT_OFFSETS = {{1, 2}, {-1, 2}, {1, -2}, {-1, -2}, {-2, 1}, {-2, -1}, {2, 1}, {2, -1}};
+    private static final int[][] ROOK_DIRECTIONS = {{0, 1}, {0, -1}, {-1, 0}, {1, 0}};
+    private static final int[][] BISHOP_DIRECTIONS = {{-1, 1}, {1, 1}, {1, -1}, {-1, -1}};
+    private static final int[][] QUEEN_DIRECTIONS = {{0, 1}, {0, -1}, {-1, 0}, {1, 0}, {-1, 1}, {1, 1}, {1, -1}, {-1, -1}};
+
+    /** Number of worker threads */
+    private final int threads;
+
+    /** Tables generated so far, by material spec */
+    private final Map<String, byte[]> tables = new HashMap<>();
+
+    /**
+     * Create a generator
+     * @param threads The number of worker threads to use
+     */
+    public TablebaseGenerator(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Generate a table and write it to a directory
+     * @param material The material to generate
+     * @param directory The directory for the table file
+     * @return the written file
+     * @throws IOException if the file can not be written
+     */
+    public Path generate(Material material, Path directory) throws IOException {
+        byte[] entries = generate(material);
+        Files.createDirectories(directory);
+        Path file = directory.resolve(material.getSpec() + Tablebase.EXTENSION);
+        Tablebase.write(file, material, entries);
+        return file;
+    }
+
+    /**
+     * Generate a table in memory, generating the tables it captures into first
+     * @param material The material to generate
+     * @return one entry per index, in the format described by {@link Tablebase}
+     */
+    public byte[] generate(Material material) {
+        byte[] entries = tables.get(material.getSpec());
+        if (entries != null) {
+            return entries;
+        }
+        byte[][] captureTables = new byte[material.size()][];
+        for (int captured = 2; captured < material.size(); captured++) {
+            captureTables[captured] = generate(material.without(captured));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            entries = new Job(material, captureTables, executor).run();
+        } finally {
+            executor.shutdown();
+        }
+        tables.put(material.getSpec(), entries);
+        return entries;
+    }
+
+    /** A growable list of ints, to keep millions of indexes unboxed */
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+    }
+
+    /** Receives the successors of a position */
+    private interface MoveSink {
+        /**
+         * @param captured The index of the captured piece, or -1 for a quiet move
+         * @param index The index of the successor in its table
+         * @return false to stop generating moves
+         */
+        boolean accept(int captured, int index);
+    }
+
+    /** Work on the pieces of a chunk of indexes */
+    private interface ChunkTask<T> {
+        T run(Scratch scratch, int from, int to);
+    }
+
+    /** The generation of a single table */
+    private final class Job {
+        private final Material material;
+        private final byte[][] captureTables;
+        private final ExecutorService executor;
+        private final byte[] entries;
+
+        /** Positions to re-examine at a given ply because one of their captures resolves there */
+        private final IntList[] scheduled = new IntList[MAX_PLIES + 2];
+
+        Job(Material material, byte[][] captureTables, ExecutorService executor) {
+            this.material = material;
+            this.captureTables = captureTables;
+            this.executor = executor;
+            this.entries = new byte[material.entryCount()];
+            for (int i = 0; i < scheduled.length; i++) {
+                scheduled[i] = new IntList();
+            }
+        }
+
+        byte[] run() {
+            IntList mates = new IntList();
+            for (IntList[] chunk : inParallel(entries.length, threads * 8, this::classify)) {
+                mates.addAll(chunk[0]);
+                for (int ply = 1; ply < scheduled.length; ply++) {
+                    scheduled[ply].addAll(chunk[ply]);
+                }
+            }
+
+            BitSet frontier = predecessorsOf(mates);
+            for (int ply = 1; ply <= MAX_PLIES; ply++) {
+                IntList due = scheduled[ply];
+                for (int i = 0; i < due.size; i++) {
+                    frontier.set(due.values[i]);
+                }
+                scheduled[ply] = null;
+                if (frontier.isEmpty() && nothingScheduledAfter(ply)) {
+                    break;
+                }
+                int[] candidates = frontier.stream().toArray();
+                int currentPly = ply;
+                IntList resolved = new IntList();
+                for (IntList chunk : inParallel(candidates.length, threads * 8, (scratch, from, to) -> {
+                    IntList found = new IntList();
+                    for (int i = from; i < to; i++) {
+                        if (resolve(scratch, candidates[i], currentPly)) {
+                            found.add(candidates[i]);
+                        }
+                    }
+                    return found;
+                })) {
+                    resolved.addAll(chunk);
+                }
+                frontier = predecessorsOf(resolved);
+            }
+            return entries;
+        }
+
+        private boolean nothingScheduledAfter(int ply) {
+            for (int i = ply + 1; i < scheduled.length; i++) {
+                if (scheduled[i].size > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * First pass: mark illegal positions, mates and stalemates, and schedule the positions whose
+         * captures lead into already resolved positions of a smaller table.
+         * @return the mates at index 0, and the positions to re-examine at each ply
+         */
+        private IntList[] classify(Scratch scratch, int from, int to) {
+            IntList[] found = new IntList[MAX_PLIES + 2];
+            for (int i = 0; i < found.length; i++) {
+                found[i] = new IntList();
+            }
+            int[] moves = new int[1];
+            for (int index = from; index < to; index++) {
+                if (!scratch.decode(index) || !scratch.isLegal()) {
+                    entries[index] = (byte) Tablebase.ILLEGAL;
+                    continue;
+                }
+                int position = index;
+                moves[0] = 0;
+                scratch.generateMoves((captured, successor) -> {
+                    moves[0]++;
+                    if (captured >= 0) {
+                        int value = captureTables[captured][successor];
+                        int ply = value > 0 ? value + 1 : -value;
+                        if (value != 0 && ply < found.length) {
+                            found[ply].add(position);
+                        }
+                    }
+                    return true;
+                });
+                if (moves[0] == 0 && scratch.isInCheck()) {
+                    entries[index] = -1;
+                    found[0].add(index);
+                }
+            }
+            return found;
+        }
+
+        /**
+         * Re-examine an unresolved position at the given ply
+         * @return true if the position was resolved
+         */
+        private boolean resolve(Scratch scratch, int index, int ply) {
+            if (entries[index] != 0) {
+                return false;
+            }
+            scratch.decode(index);
+            boolean[] outcome = {false, true, false}; // win, all moves lose, any move
+            scratch.generateMoves((captured, successor) -> {
+                int value = captured < 0 ? entries[successor] : captureTables[captured][successor];
+                outcome[2] = true;
+                if (value < 0 && value != Tablebase.ILLEGAL && -value - 1 <= ply - 1) {
+                    outcome[0] = true;
+                    return false;
+                }
+                if (value <= 0 || value > ply - 1) {
+                    outcome[1] = false;
+                }
+                return true;
+            });
+            if (outcome[0]) {
+                entries[index] = (byte) ply;
+                return true;
+            } else if (outcome[2] && outcome[1]) {
+                entries[index] = (byte) (-ply - 1);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Collect the unresolved positions that can reach one of the given positions with a quiet move
+         */
+        private BitSet predecessorsOf(IntList positions) {
+            BitSet result = new BitSet(entries.length);
+            // one chunk per thread, as every chunk holds a bit per index
+            for (BitSet chunk : inParallel(positions.size, threads, (scratch, from, to) -> {
+                BitSet found = new BitSet(entries.length);
+                for (int i = from; i < to; i++) {
+                    scratch.decode(positions.values[i]);
+                    scratch.generateUnmoves(predecessor -> {
+                        if (entries[predecessor] == 0) {
+                            found.set(predecessor);
+                        }
+                    });
+                }
+                return found;
+            })) {
+                result.or(chunk);
+            }
+            return result;
+        }
+
+        /**
+         * Split a range of work into chunks and run them on the worker threads
+         */
+        private <T> List<T> inParallel(int size, int maxChunks, ChunkTask<T> task) {
+            List<T> results = new ArrayList<>();
+            if (size == 0) {
+                return results;
+            }
+            int chunks = Math.min(size, maxChunks);
+            List<Callable<T>> calls = new ArrayList<>();
+            for (int c = 0; c < chunks; c++) {
+                int from = (int) ((long) size * c / chunks);
+                int to = (int) ((long) size * (c + 1) / chunks);
+                calls.add(() -> task.run(new Scratch(material), from, to));
+            }
+            try {
+                for (Future<T> future : executor.invokeAll(calls)) {
+                    results.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Tablebase generation interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Tablebase generation failed", e.getCause());
+            }
+            return results;
+        }
+    }
+
+    /** Per-thread decoded position and move generator */
+    private static final class Scratch {
+        private final int count;
+        private final char[] types;
+        private final boolean[] white;
+        /** The square of every piece */
+        private final int[] squares;
+        /** Piece index + 1 on every square, 0 when empty */
+        private final int[] board = new int[64];
+        private final int[] captureSquares;
+        private boolean whiteToMove;
+
+        Scratch(Material material) {
+            count = material.size();
+            types = new char[count];
+            white = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                types[i] = material.getType(i);
+                white[i] = material.getOwner(i) == Player.White;
+            }
+            squares = new int[count];
+            captureSquares = new int[count];
+        }
+
+        /**
+         * Load a position
+         * @return false if two pieces share a square
+         */
+        boolean decode(int index) {
+            Arrays.fill(board, 0);
+            boolean distinct = true;
+            for (int i = count - 1; i >= 0; i--) {
+                squares[i] = index & 63;
+                index >>>= 6;
+                if (board[squares[i]] != 0) {
+                    distinct = false;
+                }
+                board[squares[i]] = i + 1;
+            }
+            whiteToMove = index == 0;
+            return distinct;
+        }
+
+        /**
+         * @return false if a pawn stands on its own first rank or the side not to move is in check
+         */
+        boolean isLegal() {
+            for (int i = 2; i < count; i++) {
+                if (types[i] == 'P' && (squares[i] >> 3) == (white[i] ? 0 : 7)) {
+                    return false;
+                }
+            }
+            return !isAttacked(squares[whiteToMove ? 1 : 0], whiteToMove, -1);
+        }
+
+        boolean isInCheck() {
+            return isAttacked(squares[whiteToMove ? 0 : 1], !whiteToMove, -1);
+        }
+
+        /**
+         * Test if a square is attacked
+         * @param target The square
+         * @param byWhite The colour of the attacker
+         * @param ignored A captured piece that no longer attacks, or -1
+         */
+        private boolean isAttacked(int target, boolean byWhite, int ignored) {
+            for (int i = 0; i < count; i++) {
+                if (i != ignored && white[i] == byWhite && attacks(i, target)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean attacks(int piece, int target) {
+            int from = squares[piece];
+            int dx = (target & 7) - (from & 7);
+            int dy = (target >> 3) - (from >> 3);
+            switch (types[piece]) {
+                case 'K':
+                    return Math.max(Math.abs(dx), Math.abs(dy)) == 1;
+                case 'N':
+                    return Math.abs(dx * dy) == 2;
+                case 'P':
+                    return Math.abs(dx) == 1 && dy == (white[piece] ? 1 : -1);
+                case 'R':
+                    return (dx == 0 || dy == 0) && isRayEmpty(from, dx, dy);
+                case 'B':
+                    return Math.abs(dx) == Math.abs(dy) && isRayEmpty(from, dx, dy);
+                default:
+                    return (dx == 0 || dy == 0 || Math.abs(dx) == Math.abs(dy)) && isRayEmpty(from, dx, dy);
+            }
+        }
+
+        /** @return true if all squares strictly between from and from + (dx, dy) are empty */
+        private boolean isRayEmpty(int from, int dx, int dy) {
+            int steps = Math.max(Math.abs(dx), Math.abs(dy));
+            if (steps == 0) {
+                return false;
+            }
+            int step = Integer.signum(dy) * 8 + Integer.signum(dx);
+            for (int s = from + step, i = 1; i < steps; i++, s += step) {
+                if (board[s] != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Generate all legal moves of the side to move
+         */
+        void generateMoves(MoveSink sink) {
+            for (int i = 0; i < count; i++) {
+                if (white[i] != whiteToMove) {
+                    continue;
+                }
+                int from = squares[i];
+                int x = from & 7;
+                int y = from >> 3;
+                boolean more = true;
+                switch (types[i]) {
+                    case 'K':
+                        more = steps(i, x, y, KING_OFFSETS, false, sink);
+                        break;
+                    case 'N':
+                        more = steps(i, x, y, KNIGHT_OFFSETS, false, sink);
+                        break;
+                    case 'R':
+                        more = steps(i, x, y, ROOK_DIRECTIONS, true, sink);
+                        break;
+                    case 'B':
+                        more = steps(i, x, y, BISHOP_DIRECTIONS, true, sink);
+                        break;
+                    case 'Q':
+                        more = steps(i, x, y, QUEEN_DIRECTIONS, true, sink);
+                        break;
+                    default:
+                        more = pawnMoves(i, x, y, sink);
+                }
+                if (!more) {
+                    return;
+                }
+            }
+        }
+
+        private boolean steps(int piece, int x, int y, int[][] offsets, boolean slide, MoveSink sink) {
+            for (int[] offset : offsets) {
+                for (int tx = x + offset[0], ty = y + offset[1]; tx >= 0 && tx < 8 && ty >= 0 && ty < 8; tx += offset[0], ty += offset[1]) {
+                    int target = ty * 8 + tx;
+                    int occupant = board[target] - 1;
+                    if (occupant >= 0 && white[occupant] == white[piece]) {
+                        break;
+                    }
+                    if (!tryMove(piece, target, occupant, sink)) {
+                        return false;
+                    }
+                    if (occupant >= 0 || !slide) {
+                        break;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private boolean pawnMoves(int piece, int x, int y, MoveSink sink) {
+            int direction = white[piece] ? 1 : -1;
+            int ty = y + direction;
+            if (ty < 0 || ty > 7) {
+                return true; // a pawn on its last rank is stuck, there is no promotion
+            }
+            int ahead = ty * 8 + x;
+            if (board[ahead] == 0) {
+                if (!tryMove(piece, ahead, -1, sink)) {
+                    return false;
+                }
+                int twoAhead = ahead + direction * 8;
+                if (y == (white[piece] ? 1 : 6) && board[twoAhead] == 0 && !tryMove(piece, twoAhead, -1, sink)) {
+                    return false;
+                }
+            }
+            for (int tx = x - 1; tx <= x + 1; tx += 2) {
+                if (tx >= 0 && tx < 8) {
+                    int occupant = board[ty * 8 + tx] - 1;
+                    if (occupant >= 0 && white[occupant] != white[piece] && !tryMove(piece, ty * 8 + tx, occupant, sink)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Play a pseudo-legal move, report it if it does not leave the own king in check, and take it back
+         */
+        private boolean tryMove(int piece, int target, int captured, MoveSink sink) {
+            int from = squares[piece];
+            board[from] = 0;
+            board[target] = piece + 1;
+            squares[piece] = target;
+
+            boolean legal = !isAttacked(squares[white[piece] ? 0 : 1], !white[piece], captured);
+            int successor = 0;
+            if (legal) {
+                int next = whiteToMove ? 1 : 0;
+                if (captured < 0) {
+                    successor = Tablebase.index(next, squares, count);
+                } else {
+                    int remaining = 0;
+                    for (int i = 0; i < count; i++) {
+                        if (i != captured) {
+                            captureSquares[remaining++] = squares[i];
+                        }
+                    }
+                    successor = Tablebase.index(next, captureSquares, remaining);
+                }
+            }
+
+            squares[piece] = from;
+            board[from] = piece + 1;
+            board[target] = captured + 1;
+            return !legal || sink.accept(captured, successor);
+        }
+
+        /**
+         * Generate the indexes of all positions that reach this one with a quiet move.
+         * This may include illegal positions, which the caller filters out.
+         */
+        void generateUnmoves(IntConsumer sink) {
+            int previous = whiteToMove ? 1 : 0;
+            for (int i = 0; i < count; i++) {
+                if (white[i] == whiteToMove) {
+                    continue;
+                }
+                int to = squares[i];
+                int x = to & 7;
+                int y = to >> 3;
+                switch (types[i]) {
+                    case 'K':
+                        unsteps(i, previous, x, y, KING_OFFSETS, false, sink);
+                        break;
+                    case 'N':
+                        unsteps(i, previous, x, y, KNIGHT_OFFSETS, false, sink);
+                        break;
+                    case 'R':
+                        unsteps(i, previous, x, y, ROOK_DIRECTIONS, true, sink);
+                        break;
+                    case 'B':
+                        unsteps(i, previous, x, y, BISHOP_DIRECTIONS, true, sink);
+                        break;
+                    case 'Q':
+                        unsteps(i, previous, x, y, QUEEN_DIRECTIONS, true, sink);
+                        break;
+                    default:
+                        int direction = white[i] ? -1 : 1;
+                        int behind = to + direction * 8;
+                        int fromY = y + direction;
+                        if (fromY >= 1 && fromY <= 6 && board[behind] == 0) {
+                            emit(i, previous, behind, sink);
+                            if (y == (white[i] ? 3 : 4) && board[behind + direction * 8] == 0) {
+                                emit(i, previous, behind + direction * 8, sink);
+                            }
+                        }
+                }
+            }
+        }
+
+        private void unsteps(int piece, int previous, int x, int y, int[][] offsets, boolean slide, IntConsumer sink) {
+            for (int[] offset : offsets) {
+                for (int fx = x + offset[0], fy = y + offset[1]; fx >= 0 && fx < 8 && fy >= 0 && fy < 8; fx += offset[0], fy += offset[1]) {
+                    int from = fy * 8 + fx;
+                    if (board[from] != 0) {
+                        break;
+                    }
+                    emit(piece, previous, from, sink);
+                    if (!slide) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void emit(int piece, int previous, int from, IntConsumer sink) {
+            int to = squares[piece];
+            squares[piece] = from;
+            sink.accept(Tablebase.index(previous, squares, count));
+            squares[piece] = to;
+        }
+    }
+
+    /**
+     * Command line entry point
+     * @param args material specs to generate, optionally preceded by "-d &lt;directory&gt;" and "-t &lt;threads&gt;"
+     * @throws IOException if a table can not be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get("tablebases");
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<Material> materials = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-d") && i + 1 < args.length) {
+                directory = Paths.get(args[++i]);
+            } else if (args[i].equals("-t") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                materials.add(Material.parse(args[i]));
+            }
+        }
+        if (materials.isEmpty()) {
+            System.out.println("Usage: TablebaseGenerator [-d <directory>] [-t <threads>] <material>...  i.e. KQK KRK KPK KBNK");
+            return;
+        }
+
+        TablebaseGenerator generator = new TablebaseGenerator(threads);
+        for (Material material : materials) {
+            long start = System.nanoTime();
+            Path file = generator.generate(material, directory);
+            System.out.println("Generated " + file + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+}
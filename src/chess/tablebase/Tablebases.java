@@ -0,0 +1,81 @@
+package chess.tablebase;
+
+import chess.GameState;
+import chess.Player;
+import chess.pieces.Piece;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * All tablebases found in a directory, looked up by the material of a position.
+ */
+public final class Tablebases {
+
+    /** Tables by {@link Material#key()} */
+    private final Map<String, Tablebase> tables = new HashMap<>();
+
+    private Tablebases() {
+    }
+
+    /**
+     * Map every tablebase file of a directory. A missing directory gives an empty set of tables.
+     * @param directory The directory to scan
+     * @return the tables
+     * @throws IOException if a file can not be read
+     */
+    public static Tablebases load(Path directory) throws IOException {
+        Tablebases result = new Tablebases();
+        if (!Files.isDirectory(directory)) {
+            return result;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + Tablebase.EXTENSION)) {
+            for (Path file : files) {
+                Tablebase table = Tablebase.open(file);
+                result.tables.put(table.getMaterial().key(), table);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of tables
+     */
+    public int size() {
+        return tables.size();
+    }
+
+    /**
+     * Look up a position in the table for its material
+     * @param state The position
+     * @return the entry as described by {@link Tablebase}, or {@link Tablebase#UNKNOWN} if no table covers the position
+     */
+    public int probe(GameState state) {
+        if (state.getPieces().size() > 4) {
+            return Tablebase.UNKNOWN;
+        }
+        StringBuilder white = new StringBuilder("K");
+        StringBuilder black = new StringBuilder("K");
+        for (Piece piece : state.getPieces().values()) {
+            char type = Character.toUpperCase(piece.getIdentifier());
+            if (type != 'K') {
+                (piece.getOwner() == Player.White ? white : black).append(type);
+            }
+        }
+        Material material;
+        try {
+            material = Material.parse(white.append(black).toString());
+        } catch (IllegalArgumentException e) {
+            return Tablebase.UNKNOWN;
+        }
+        Tablebase table = tables.get(material.key());
+        if (table == null) {
+            table = tables.get(material.mirror().key());
+        }
+        return table == null ? Tablebase.UNKNOWN : table.probe(state);
+    }
+}
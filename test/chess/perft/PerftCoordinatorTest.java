@@ -0,0 +1,123 @@
+package chess.perft;
+
+import chess.Fen;
+import chess.GameState;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@link PerftCoordinator} against worker processes on localhost
+ */
+public class PerftCoordinatorTest {
+
+    private static final int DEPTH = 4;
+
+    private final List<Process> processes = new ArrayList<>();
+
+    @After
+    public void stopWorkers() throws InterruptedException {
+        for (Process process : processes) {
+            process.destroyForcibly().waitFor(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(timeout = 120_000)
+    public void totalsSurviveAWorkerKilledMidJob() throws Exception {
+        List<GameState> positions = Arrays.asList(Fen.parse(Fen.START),
+                Fen.parse("r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w - - 0 1"));
+        long[] expected = new long[positions.size()];
+        for (int p = 0; p < expected.length; p++) {
+            expected[p] = Perft.perft(positions.get(p), DEPTH);
+        }
+
+        try (PerftCoordinator coordinator = new PerftCoordinator(0, 0)) {
+            for (int w = 0; w < 3; w++) {
+                spawnWorker(coordinator.getPort());
+            }
+            awaitWorkers(coordinator, 3);
+            FutureTask<long[]> job = new FutureTask<>(() -> coordinator.perft(positions, DEPTH));
+            new Thread(job, "perft-job").start();
+
+            // every worker holds a unit from the start of the job until the queue runs dry
+            Thread.sleep(1000);
+            assertTrue("The job finished before a worker could be killed", !job.isDone());
+            processes.get(0).destroyForcibly().waitFor(5, TimeUnit.SECONDS);
+
+            assertArrayEquals(expected, job.get());
+            assertTrue("The killed worker's unit was not requeued", coordinator.getRequeuedCount() >= 1);
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void jobFailsWithoutWorkers() throws Exception {
+        long wait = 500;
+        try (PerftCoordinator coordinator = new PerftCoordinator(0, 0, wait)) {
+            long start = System.nanoTime();
+            try {
+                coordinator.perft(Arrays.asList(Fen.parse(Fen.START)), DEPTH);
+                fail("A job without workers finished");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("No worker connected"));
+            }
+            assertTrue("Failed before the wait was over", System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(wait));
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void jobFailsWhenAUnitKeepsKillingWorkers() throws Exception {
+        try (PerftCoordinator coordinator = new PerftCoordinator(0, 0)) {
+            // takes a unit and disconnects without answering, like a worker that crashes on it
+            Thread crashing = new Thread(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    try (Socket socket = new Socket("localhost", coordinator.getPort())) {
+                        new DataInputStream(socket.getInputStream()).readByte();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }, "crashing-worker");
+            crashing.setDaemon(true);
+            crashing.start();
+            try {
+                coordinator.perft(Arrays.asList(Fen.parse(Fen.START)), DEPTH);
+                fail("A job whose units always fail finished");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("failed on " + PerftCoordinator.MAX_ATTEMPTS + " workers"));
+            } finally {
+                crashing.interrupt();
+            }
+        }
+    }
+
+    private void spawnWorker(int port) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        processes.add(new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                PerftWorker.class.getName(), "localhost", String.valueOf(port), "1")
+                .inheritIO()
+                .start());
+    }
+
+    private static void awaitWorkers(PerftCoordinator coordinator, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (coordinator.getWorkerCount() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Only " + coordinator.getWorkerCount() + " of " + count + " workers connected");
+            }
+            Thread.sleep(50);
+        }
+    }
+}